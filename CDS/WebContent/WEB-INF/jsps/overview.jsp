@@ -6,6 +6,7 @@
 <%@ page import="org.icpc.tools.contest.model.ContestUtil" %>
 <%@ page import="org.icpc.tools.contest.model.IState" %>
 <%@ page import="org.icpc.tools.cds.CDSConfig" %>
+<%@ page import="org.icpc.tools.cds.util.FileCache" %>
 <% request.setAttribute("title", "Overview"); %>
 <%@ include file="layout/head.jsp" %>
 <% IState state = contest.getState();
@@ -147,6 +148,11 @@
                                 <td><b>Validation:</b></td>
                                 <td id="sourceValidation">-</td>
                             </tr>
+                            <tr>
+                                <td><b>Events:</b></td>
+                                <td><%= cc.getContest().getNumObjects() %> (<%= cc.getContest().getMemoryFootprint() / 1024 %>kB)
+                                </td>
+                            </tr>
                         </tbody>
                     </table>
                 </div>
@@ -222,6 +228,35 @@
                     </table>
                 </div>
             </div>
+
+            <div class="card">
+                <div class="card-header">
+                    <h3 class="card-title">File Cache</h3>
+                </div>
+                <div class="card-body p-0">
+                    <% FileCache fileCache = FileCache.getInstance(); %>
+                    <table class="table table-sm table-hover table-striped">
+                        <tbody>
+                            <tr>
+                                <td>Files:</td>
+                                <td align="right"><%= fileCache.getNumFiles() %> (<%= fileCache.getSize() / 1024 %>kB)</td>
+                            </tr>
+                            <tr>
+                                <td>Hits:</td>
+                                <td align="right"><%= fileCache.getHits() %></td>
+                            </tr>
+                            <tr>
+                                <td>Misses:</td>
+                                <td align="right"><%= fileCache.getMisses() %></td>
+                            </tr>
+                            <tr>
+                                <td>Evictions:</td>
+                                <td align="right"><%= fileCache.getEvictions() %></td>
+                            </tr>
+                        </tbody>
+                    </table>
+                </div>
+            </div>
         </div>
     </div>
 </div>
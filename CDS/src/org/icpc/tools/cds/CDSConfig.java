@@ -16,6 +16,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.icpc.tools.cds.service.ExecutorListener;
 import org.icpc.tools.cds.video.VideoAggregator;
 import org.icpc.tools.cds.video.VideoAggregator.ConnectionMode;
+import org.icpc.tools.cds.video.VideoRecorder;
 import org.icpc.tools.contest.Trace;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -28,6 +29,11 @@ import org.xml.sax.InputSource;
 public class CDSConfig {
 	private static final Object INIT_LOCK = new Object();
 	private static CDSConfig instance;
+	private static final int DEFAULT_SLOW_FEED_TIMEOUT = 120;
+	private static final int DEFAULT_FILE_CACHE_SIZE = 64; // MB
+	private static final int DEFAULT_FILE_CACHE_MAX_FILE_SIZE = 1024; // kB
+	private static final int DEFAULT_VIDEO_RECORDING_SIZE = 10000; // MB
+	private static final int DEFAULT_VIDEO_SEGMENT_LENGTH = 10; // seconds
 
 	public static class UserVideo {
 		private Element video;
@@ -79,6 +85,9 @@ public class CDSConfig {
 	private ConfiguredContest[] contests;
 	private long[] contestHashes;
 	private Domain[] domains;
+	private int slowFeedTimeout = DEFAULT_SLOW_FEED_TIMEOUT;
+	private long fileCacheSize = DEFAULT_FILE_CACHE_SIZE * 1024L * 1024L;
+	private long fileCacheMaxFileSize = DEFAULT_FILE_CACHE_MAX_FILE_SIZE * 1024L;
 	private File file;
 	private long lastModified;
 
@@ -229,12 +238,73 @@ public class CDSConfig {
 			}
 			domains = temp;
 		}
+
+		int timeout = DEFAULT_SLOW_FEED_TIMEOUT;
+		children = getChildren(e, "feed");
+		if (children != null && children.length > 0) {
+			Integer t = getInteger(children[0], "slowClientTimeout");
+			if (t != null)
+				timeout = t;
+		}
+		slowFeedTimeout = timeout;
+
+		int cacheSize = DEFAULT_FILE_CACHE_SIZE;
+		int cacheMaxFileSize = DEFAULT_FILE_CACHE_MAX_FILE_SIZE;
+		children = getChildren(e, "fileCache");
+		if (children != null && children.length > 0) {
+			Integer t = getInteger(children[0], "size");
+			if (t != null)
+				cacheSize = t;
+			t = getInteger(children[0], "maxFileSize");
+			if (t != null)
+				cacheMaxFileSize = t;
+		}
+		fileCacheSize = cacheSize * 1024L * 1024L;
+		fileCacheMaxFileSize = cacheMaxFileSize * 1024L;
+
+		children = getChildren(e, "videoRecording");
+		if (children != null && children.length > 0) {
+			String location = getString(children[0], "location");
+			if (location != null) {
+				int size = DEFAULT_VIDEO_RECORDING_SIZE;
+				int segmentLength = DEFAULT_VIDEO_SEGMENT_LENGTH;
+				Integer t = getInteger(children[0], "size");
+				if (t != null)
+					size = t;
+				t = getInteger(children[0], "segmentLength");
+				if (t != null && t > 0)
+					segmentLength = t;
+				VideoRecorder.getInstance().configure(new File(location), size * 1024L * 1024L, segmentLength * 1000L);
+			}
+		}
 	}
 
 	public Domain[] getDomains() {
 		return domains;
 	}
 
+	/**
+	 * Returns the number of seconds an event feed client may fall behind before it is disconnected,
+	 * or 0 if slow clients should never be disconnected.
+	 */
+	public int getSlowFeedTimeout() {
+		return slowFeedTimeout;
+	}
+
+	/**
+	 * Returns the maximum total size of the in-memory file cache, in bytes.
+	 */
+	public long getFileCacheSize() {
+		return fileCacheSize;
+	}
+
+	/**
+	 * Returns the size of the largest file that will be kept in the in-memory file cache, in bytes.
+	 */
+	public long getFileCacheMaxFileSize() {
+		return fileCacheMaxFileSize;
+	}
+
 	private static Element readElement(File file) throws Exception {
 		Document document = null;
 		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
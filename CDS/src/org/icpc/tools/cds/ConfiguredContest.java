@@ -14,6 +14,10 @@ import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.websocket.Session;
 
+import org.icpc.tools.cds.service.ContestFeedExecutor;
+import org.icpc.tools.cds.service.ContestFeedExecutor.Feed;
+import org.icpc.tools.cds.service.EventFeedCache;
+import org.icpc.tools.cds.service.ScoreboardCache;
 import org.icpc.tools.cds.util.PlaybackContest;
 import org.icpc.tools.cds.util.Role;
 import org.icpc.tools.cds.video.VideoAggregator;
@@ -33,6 +37,7 @@ import org.icpc.tools.contest.model.IRun;
 import org.icpc.tools.contest.model.ISubmission;
 import org.icpc.tools.contest.model.ITeam;
 import org.icpc.tools.contest.model.ITeamMember;
+import org.icpc.tools.contest.model.Scoreboard;
 import org.icpc.tools.contest.model.feed.CCSContestSource;
 import org.icpc.tools.contest.model.feed.ContestSource;
 import org.icpc.tools.contest.model.feed.ContestSource.ConnectionState;
@@ -48,7 +53,11 @@ import org.icpc.tools.contest.model.internal.State;
 import org.w3c.dom.Element;
 
 public class ConfiguredContest {
-	private static final int NUM_TEAMS = 0;
+	// roles that a contest object is visible to
+	private static final int TRUSTED = 1;
+	private static final int BALLOON = 2;
+	private static final int PUBLIC = 4;
+	private static final int ALL_ROLES = TRUSTED | BALLOON | PUBLIC;
 
 	public enum Mode {
 		ARCHIVE, PLAYBACK, LIVE
@@ -70,7 +79,6 @@ public class ConfiguredContest {
 	private Contest trustedContest;
 	private Contest publicContest;
 	private Contest balloonContest;
-	private Contest[] teamContests;
 
 	private Map<Object, String> clients = new HashMap<>();
 	private long[] metrics = new long[11]; // REST, feed, ws, web, download, scoreboard, XML,
@@ -373,6 +381,19 @@ public class ConfiguredContest {
 	}
 
 	public void close() {
+		EventFeedCache.release(contest);
+		EventFeedCache.release(trustedContest);
+		EventFeedCache.release(publicContest);
+		EventFeedCache.release(balloonContest);
+		ScoreboardCache.release(contest);
+		ScoreboardCache.release(trustedContest);
+		ScoreboardCache.release(publicContest);
+		ScoreboardCache.release(balloonContest);
+		Scoreboard.release(contest);
+		Scoreboard.release(trustedContest);
+		Scoreboard.release(publicContest);
+		Scoreboard.release(balloonContest);
+
 		try {
 			getContestSource().close();
 		} catch (Exception e) {
@@ -614,100 +635,17 @@ public class ConfiguredContest {
 			balloonContest.setHashCode(contest.hashCode());
 			trustedContest = new Contest();
 			trustedContest.setHashCode(contest.hashCode());
-			teamContests = new Contest[NUM_TEAMS];
-			for (int i = 0; i < NUM_TEAMS; i++) {
-				teamContests[i] = new Contest();
-				teamContests[i].setHashCode(contest.hashCode());
-			}
 			State currentState = new State();
 			contest.addListenerFromStart((contest2, obj, d) -> {
-				// don't show problems until contest starts
-				if (obj instanceof IProblem && currentState.getStarted() == null)
-					return;
-
-				// filter awards from a role below blue
-				if (obj instanceof IAward)
-					return;
-
-				if (obj instanceof ICommentary) {
-					ICommentary c = (ICommentary) obj;
-					int freezeTime = contest.getDuration() - contest.getFreezeDuration();
-					if (c.getContestTime() >= freezeTime)
-						return;
-					trustedContest.add(obj);
-					return;
-				}
-
-				// filter out hidden groups and dependencies
-				IContestObject obj2 = filterHidden(obj);
-				if (obj2 == null)
-					return;
-
-				long time = ContestObject.getContestTime(obj);
-
-				// all - don't show any submissions or judgements from outside the contest
-				// public - show judgments until the freeze, only public clars, no runs
-				// balloon - show judgments until the freeze and then any after if the
-				// team has less than 3, only public clars, no runs
-				// trusted - show runs & judgments until the freeze, show all clars
-				if (obj instanceof ISubmission) {
-					if (time >= 0 && time < contest.getDuration()) {
-						trustedContest.add(obj2);
-						balloonContest.add(obj2);
-						publicContest.add(obj2);
-						for (int i = 0; i < NUM_TEAMS; i++)
-							teamContests[i].add(obj2);
-					}
-				} else if (obj instanceof IJudgement) {
-					IJudgement j = (IJudgement) obj;
-					int freezeTime = contest.getDuration() - contest.getFreezeDuration();
-					ISubmission s = contest.getSubmissionById(j.getSubmissionId());
-					if (s == null || s.getContestTime() > freezeTime) {
-						if (s != null && s.getContestTime() < freezeTime && contest.isSolved(s)
-								&& getNumSolved(balloonContest, s.getTeamId()) < 3)
-							balloonContest.add(obj);
-						return;
-					}
-					trustedContest.add(obj2);
-					publicContest.add(obj2);
-					balloonContest.add(obj2);
-					for (int i = 0; i < NUM_TEAMS; i++)
-						teamContests[i].add(obj2);
-				} else if (obj instanceof IRun) {
-					IRun r = (IRun) obj;
-					int freezeTime = contest.getDuration() - contest.getFreezeDuration();
-					if (r.getContestTime() >= freezeTime)
-						return;
-					trustedContest.add(obj2);
-				} else if (obj instanceof IClarification) {
-					trustedContest.add(obj2);
-					IClarification clar = (IClarification) obj;
-					if (clar.getFromTeamId() == null && clar.getToTeamId() == null) {
-						publicContest.add(obj2);
-						balloonContest.add(obj2);
-						for (int i = 0; i < NUM_TEAMS; i++)
-							teamContests[i].add(obj2);
-					}
-				} else {
-					trustedContest.add(obj2);
-					balloonContest.add(obj2);
-					publicContest.add(obj2);
-					for (int i = 0; i < NUM_TEAMS; i++)
-						teamContests[i].add(obj2);
-				}
+				addToRoles(obj, getVisibleRoles(obj, currentState));
 
 				if (obj instanceof State) {
 					State state2 = (State) obj;
 					if (currentState.getStarted() == null && state2.getStarted() != null) {
 						// send problems at start
 						IProblem[] probs = contest.getProblems();
-						for (IProblem p : probs) {
-							trustedContest.add(p);
-							publicContest.add(p);
-							balloonContest.add(p);
-							for (int i = 0; i < NUM_TEAMS; i++)
-								teamContests[i].add(obj2);
-						}
+						for (IProblem p : probs)
+							addToRoles(p, ALL_ROLES);
 					}
 					if (currentState.isRunning() != state2.isRunning()) {
 						if (state2.isRunning())
@@ -764,6 +702,79 @@ public class ConfiguredContest {
 		}
 	}
 
+	/**
+	 * Returns the roles (below blue) that can see the given contest object, as a bitmask. This is
+	 * computed once per event and shared by all of the role contests.
+	 *
+	 * all - don't show any submissions or judgements from outside the contest
+	 * public - show judgments until the freeze, only public clars, no runs
+	 * balloon - show judgments until the freeze and then any after if the team has less than 3,
+	 * only public clars, no runs
+	 * trusted - show runs & judgments until the freeze, show all clars
+	 */
+	private int getVisibleRoles(IContestObject obj, State currentState) {
+		// don't show problems until contest starts
+		if (obj instanceof IProblem && currentState.getStarted() == null)
+			return 0;
+
+		// filter awards from a role below blue
+		if (obj instanceof IAward)
+			return 0;
+
+		int freezeTime = contest.getDuration() - contest.getFreezeDuration();
+		if (obj instanceof ICommentary) {
+			ICommentary c = (ICommentary) obj;
+			if (c.getContestTime() >= freezeTime)
+				return 0;
+			return TRUSTED;
+		}
+
+		// filter out hidden groups and dependencies
+		if (filterHidden(obj) == null)
+			return 0;
+
+		if (obj instanceof ISubmission) {
+			long time = ContestObject.getContestTime(obj);
+			if (time >= 0 && time < contest.getDuration())
+				return ALL_ROLES;
+			return 0;
+		} else if (obj instanceof IJudgement) {
+			IJudgement j = (IJudgement) obj;
+			ISubmission s = contest.getSubmissionById(j.getSubmissionId());
+			if (s == null || s.getContestTime() > freezeTime) {
+				if (s != null && s.getContestTime() < freezeTime && contest.isSolved(s)
+						&& getNumSolved(balloonContest, s.getTeamId()) < 3)
+					return BALLOON;
+				return 0;
+			}
+			return ALL_ROLES;
+		} else if (obj instanceof IRun) {
+			IRun r = (IRun) obj;
+			if (r.getContestTime() >= freezeTime)
+				return 0;
+			return TRUSTED;
+		} else if (obj instanceof IClarification) {
+			IClarification clar = (IClarification) obj;
+			if (clar.getFromTeamId() == null && clar.getToTeamId() == null)
+				return ALL_ROLES;
+			return TRUSTED;
+		}
+		return ALL_ROLES;
+	}
+
+	/**
+	 * Add a contest object to each of the given role contests. The contest objects themselves are
+	 * shared, only the per-role indexes and results are separate.
+	 */
+	private void addToRoles(IContestObject obj, int roles) {
+		if ((roles & TRUSTED) != 0)
+			trustedContest.add(obj);
+		if ((roles & BALLOON) != 0)
+			balloonContest.add(obj);
+		if ((roles & PUBLIC) != 0)
+			publicContest.add(obj);
+	}
+
 	protected boolean isJudgementHidden(IJudgement j) {
 		if (j == null)
 			return false;
@@ -821,10 +832,13 @@ public class ConfiguredContest {
 		if (teamId == null)
 			return 0;
 
+		ISubmission[] submissions = contest2.getSubmissionsByTeamId(teamId);
+		if (submissions == null)
+			return 0;
+
 		List<String> solved = new ArrayList<>();
-		ISubmission[] submissions = contest2.getSubmissions();
 		for (ISubmission s : submissions) {
-			if (teamId.equals(s.getTeamId()) && contest2.isSolved(s)) {
+			if (contest2.isSolved(s)) {
 				if (!solved.contains(s.getProblemId()))
 					solved.add(s.getProblemId());
 			}
@@ -983,7 +997,11 @@ public class ConfiguredContest {
 		synchronized (clients) {
 			for (Object obj : clients.keySet()) {
 				try {
-					list.add(clients.get(obj));
+					Feed feed = ContestFeedExecutor.getInstance().getFeed(obj);
+					if (feed != null)
+						list.add(clients.get(obj) + " (" + feed.getStats() + ")");
+					else
+						list.add(clients.get(obj));
 				} catch (Exception e) {
 					Trace.trace(Trace.ERROR, "Error getting clients", e);
 					remove(obj);
@@ -1011,9 +1029,7 @@ public class ConfiguredContest {
 	 * @param co
 	 */
 	public void exposeContestObject(IContestObject co) {
-		trustedContest.add(co);
-		balloonContest.add(co);
-		publicContest.add(co);
+		addToRoles(co, ALL_ROLES);
 	}
 
 	@Override
@@ -8,6 +8,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
@@ -74,6 +76,8 @@ public class Client {
 
 	class Message {
 		String message;
+		// binary frame to send instead of the message (which is then only used for tracing)
+		byte[] data;
 		int source;
 		Type type;
 		// flag is currently overloaded for two purposes: 1) to indicate info messages that only
@@ -88,6 +92,8 @@ public class Client {
 	private String name;
 	private String user;
 	private boolean isAdmin;
+	private boolean binary;
+	private Message lastThumbnail;
 	private List<TimeSync> timeSync = new ArrayList<>();
 	private Queue<Message> queue = new ConcurrentLinkedQueue<>();
 	private ClientDisplay[] displays;
@@ -97,12 +103,13 @@ public class Client {
 	private String version;
 	private long lastTimeSync = -1;
 
-	public Client(Session session, String user, int uid, String name, boolean isAdmin) {
+	public Client(Session session, String user, int uid, String name, boolean isAdmin, boolean binary) {
 		this.session = session;
 		this.user = user;
 		this.uid = uid;
 		this.name = name;
 		this.isAdmin = isAdmin;
+		this.binary = binary;
 	}
 
 	public String getUser() {
@@ -141,6 +148,13 @@ public class Client {
 		return isAdmin;
 	}
 
+	/**
+	 * Returns true if this client accepts images in binary frames.
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
+
 	public ClientInfo getClientInfo() {
 		return clientInfo;
 	}
@@ -158,6 +172,10 @@ public class Client {
 	}
 
 	private void queueIt(Type type, int source, String message, boolean flag) {
+		queueIt(type, source, message, null, flag);
+	}
+
+	private void queueIt(Type type, int source, String message, byte[] data, boolean flag) {
 		synchronized (queue) {
 			if (type == Type.INFO && flag) {
 				Message remove = null;
@@ -176,6 +194,7 @@ public class Client {
 			m.type = type;
 			m.source = source;
 			m.message = message;
+			m.data = data;
 			m.flag = flag;
 			queue.add(m);
 		}
@@ -200,7 +219,10 @@ public class Client {
 			if ((message.type != Type.PING && message.type != Type.INFO) || PresentationServer.TRACE_ALL)
 				PresentationServer.trace("> " + message.message, uid);
 
-			session.getBasicRemote().sendText(message.message);
+			if (message.data != null)
+				session.getBasicRemote().sendBinary(ByteBuffer.wrap(message.data));
+			else
+				session.getBasicRemote().sendText(message.message);
 			if (message.type == Type.COMMAND && message.flag)
 				return false;
 
@@ -278,6 +300,7 @@ public class Client {
 		JSONEncoder je = new JSONEncoder(new PrintWriter(sw));
 		je.open();
 		je.encode("type", Type.PING.name().toLowerCase());
+		je.encode("binary", true);
 		je.close();
 		queueIt(Type.PING, sw.toString());
 	}
@@ -369,6 +392,13 @@ public class Client {
 		queueIt(Type.SNAPSHOT, message);
 	}
 
+	protected void writeSnapshot(String header, byte[] frame, byte[] image) {
+		if (binary)
+			queueIt(Type.SNAPSHOT, -1, header, frame, false);
+		else
+			queueIt(Type.SNAPSHOT, toText(header, image));
+	}
+
 	protected boolean storeClientInfo(JsonObject obj) {
 		boolean baseInfo = false;
 		if (obj.containsKey(VERSION)) {
@@ -419,6 +449,74 @@ public class Client {
 		queueIt(Type.INFO, source, message, flag);
 	}
 
+	protected void writeInfo(int source, String header, byte[] frame, byte[] image) {
+		if (binary)
+			queueIt(Type.INFO, source, header, frame, true);
+		else
+			queueIt(Type.INFO, source, toText(header, image), true);
+	}
+
+	/**
+	 * Remember the last thumbnail sent by this client, so that it can be sent to admins that
+	 * connect later. Clients don't resend thumbnails that haven't changed.
+	 *
+	 * @param message the message, or just the header of a binary frame
+	 * @param frame the binary frame, or null if the message was text
+	 */
+	protected synchronized void setLastThumbnail(String message, byte[] frame) {
+		Message m = new Message();
+		m.message = message;
+		m.data = frame;
+		lastThumbnail = m;
+	}
+
+	/**
+	 * Send the last thumbnail of the given client to this admin.
+	 */
+	protected void writeLastThumbnail(Client c) {
+		Message m = null;
+		synchronized (c) {
+			m = c.lastThumbnail;
+		}
+		if (m == null)
+			return;
+
+		if (m.data == null)
+			writeInfo(c.uid, m.message, true);
+		else if (binary)
+			queueIt(Type.INFO, c.uid, m.message, m.data, true);
+		else
+			queueIt(Type.INFO, c.uid, toText(m.message, getImage(m.data)), true);
+	}
+
+	/**
+	 * Returns the JSON header of a binary frame: the length of the header, the header, and then
+	 * the image.
+	 */
+	protected static String getHeader(byte[] frame) throws IOException {
+		ByteBuffer bb = ByteBuffer.wrap(frame);
+		int len = bb.getInt();
+		if (len < 0 || len > frame.length - 4)
+			throw new IOException("Invalid frame");
+		return new String(frame, 4, len, StandardCharsets.UTF_8);
+	}
+
+	protected static byte[] getImage(byte[] frame) {
+		int start = 4 + ByteBuffer.wrap(frame).getInt();
+		byte[] b = new byte[frame.length - start];
+		System.arraycopy(frame, start, b, 0, b.length);
+		return b;
+	}
+
+	/**
+	 * Convert a binary frame back to a JSON message with a Base64 image, for clients that don't
+	 * accept binary frames.
+	 */
+	private static String toText(String header, byte[] image) {
+		int ind = header.lastIndexOf('}');
+		return header.substring(0, ind) + ",\"image\":\"" + Base64.getEncoder().encodeToString(image) + "\"}";
+	}
+
 	protected void writeProperties(Properties p) throws IOException {
 		createJSON(Type.PROPERTIES, je -> {
 			je.openChild("props");
@@ -173,6 +173,42 @@ public class PresentationServer {
 		}
 	}
 
+	/**
+	 * Handle a binary frame from a client: a JSON header followed by an image. Only info
+	 * (thumbnail) and snapshot messages are sent this way, and they are forwarded to admins
+	 * without decoding the image.
+	 */
+	protected void onMessage(Session s, byte[] frame) throws IOException {
+		Client c = null;
+		for (Client cli : clients) {
+			if (s.equals(cli.getSession()))
+				c = cli;
+		}
+
+		if (c == null)
+			throw new IOException("Client " + s.getId() + " does not exist");
+
+		String header = Client.getHeader(frame);
+		try {
+			JSONParser rdr = new JSONParser(header);
+			JsonObject obj = rdr.readObject();
+			String type = obj.getString("type");
+			if (TRACE_ALL)
+				trace("< " + header + " + " + frame.length + " bytes", c.getUID());
+
+			if (Client.Type.INFO.name().equalsIgnoreCase(type))
+				handleClientInfo(c, obj, header, frame);
+			else if (Client.Type.SNAPSHOT.name().equalsIgnoreCase(type)) {
+				trace("< " + header, c.getUID());
+				int requestUID = getUID(obj, "target");
+				forClient(getClient(requestUID), cl -> cl.writeSnapshot(header, frame, Client.getImage(frame)));
+			} else
+				Trace.trace(Trace.WARNING, "Unknown binary action: " + type);
+		} catch (Exception e) {
+			Trace.trace(Trace.WARNING, "Client connection failure: " + header, e);
+		}
+	}
+
 	protected boolean isAdminOf(String admin, String client) {
 		Domain[] domains = CDSConfig.getInstance().getDomains();
 		if (domains == null || domains.length == 0)
@@ -213,7 +249,11 @@ public class PresentationServer {
 							admClients.add(cl);
 					}
 
-					forClient(c, cl -> cl.writeClients(admClients, admClients));
+					forClient(c, cl -> {
+						cl.writeClients(admClients, admClients);
+						for (Client cli : admClients)
+							cl.writeLastThumbnail(cli);
+					});
 					adminMap.put(c, admClients);
 
 					// set each client's admin
@@ -667,6 +707,9 @@ public class PresentationServer {
 
 	protected void handleClientInfo(Client c, JsonObject obj, String message) {
 		boolean affectsBaseInfo = c.storeClientInfo(obj);
+		boolean thumbnail = obj.containsKey("image");
+		if (thumbnail)
+			c.setLastThumbnail(message, null);
 
 		// notify each of this client's admins
 		synchronized (adminMap) {
@@ -679,7 +722,29 @@ public class PresentationServer {
 				newClients.add(c);
 				forEachClient(admins, cl -> cl.writeClients(adminMap.get(cl), newClients));
 			} else // otherwise, just send the updates
-				forEachClient(admins, cl -> cl.writeInfo(c.getUID(), message, obj.containsKey("image")));
+				forEachClient(admins, cl -> cl.writeInfo(c.getUID(), message, thumbnail));
+		}
+	}
+
+	protected void handleClientInfo(Client c, JsonObject obj, String header, byte[] frame) {
+		c.storeClientInfo(obj);
+		c.setLastThumbnail(header, frame);
+
+		// notify each of this client's admins
+		synchronized (adminMap) {
+			List<Client> admins = adminMap.get(c);
+			if (admins == null || admins.isEmpty())
+				return;
+
+			byte[] image = null;
+			for (Client cl : admins) {
+				if (!cl.isBinary()) {
+					image = Client.getImage(frame);
+					break;
+				}
+			}
+			final byte[] image2 = image;
+			forEachClient(admins, cl -> cl.writeInfo(c.getUID(), header, frame, image2));
 		}
 	}
 
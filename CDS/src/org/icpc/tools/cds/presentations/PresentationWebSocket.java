@@ -1,5 +1,6 @@
 package org.icpc.tools.cds.presentations;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import javax.websocket.CloseReason;
@@ -28,6 +29,7 @@ public class PresentationWebSocket {
 	public void onOpen(Session session, EndpointConfig config) {
 		// set buffer to 500k. thumbnails are usually under 20k, but snapshots can be much bigger
 		session.setMaxTextMessageBufferSize(500 * 1024);
+		session.setMaxBinaryMessageBufferSize(500 * 1024);
 
 		String name = getParam(session, "name");
 		if (name == null) {
@@ -117,7 +119,10 @@ public class PresentationWebSocket {
 			}
 		}
 
-		Client c = new Client(session, user, uid, name, isAdmin);
+		// clients that accept images in binary frames
+		boolean binary = "true".equals(getParam(session, "binary"));
+
+		Client c = new Client(session, user, uid, name, isAdmin, binary);
 		PresentationServer.getInstance().addClient(c);
 	}
 
@@ -130,6 +135,17 @@ public class PresentationWebSocket {
 		}
 	}
 
+	@OnMessage
+	public void onMessage(ByteBuffer message, Session session) {
+		try {
+			byte[] b = new byte[message.remaining()];
+			message.get(b);
+			PresentationServer.getInstance().onMessage(session, b);
+		} catch (Throwable t) {
+			Trace.trace(Trace.ERROR, "Request error", t);
+		}
+	}
+
 	@OnClose
 	public void onClose(Session session) {
 		PresentationServer.getInstance().remove(session);
@@ -2,17 +2,73 @@ package org.icpc.tools.cds.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.icpc.tools.contest.Trace;
 
+/**
+ * Dispatches event feed output. Feeds are woken whenever there is something to write (a new
+ * contest event, or the client's connection is ready for more data) and run on a small pool of
+ * threads, so one slow client doesn't delay the others. Multiple wake-ups while a feed is
+ * waiting to run are coalesced. A periodic tick also wakes every feed so they can write
+ * heartbeats and close when the contest is done.
+ */
 public class ContestFeedExecutor {
-	interface Feed {
-		boolean doOutput();
+	private static final int NUM_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	public abstract static class Feed {
+		private final Object client;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private long latencyTotal;
+		private long latencyMax;
+		private int numEvents;
+
+		/**
+		 * A listener that schedules this feed to write output, e.g. when a new event is available.
+		 */
+		protected final Runnable wakeListener = () -> instance.wake(this);
+
+		public Feed(Object client) {
+			this.client = client;
+		}
+
+		/**
+		 * Write any available output.
+		 *
+		 * @return true if the feed should continue, or false if it is done
+		 */
+		protected abstract boolean doOutput();
+
+		/**
+		 * Returns the number of events waiting to be written.
+		 */
+		protected abstract int getBacklog();
+
+		/**
+		 * Record the time between an event being added to the contest and being written.
+		 *
+		 * @param ms the latency, in ms
+		 */
+		protected synchronized void recordLatency(long ms) {
+			latencyTotal += ms;
+			latencyMax = Math.max(latencyMax, ms);
+			numEvents++;
+		}
+
+		public synchronized String getStats() {
+			long avg = 0;
+			if (numEvents > 0)
+				avg = latencyTotal / numEvents;
+			return "backlog " + getBacklog() + ", latency " + avg + "ms avg / " + latencyMax + "ms max";
+		}
 	}
 
 	private List<Feed> feeds = new ArrayList<>();
+	private ExecutorService pool;
 	private static ContestFeedExecutor instance;
 
 	protected ContestFeedExecutor() {
@@ -20,7 +76,18 @@ public class ContestFeedExecutor {
 	}
 
 	protected void start(ScheduledExecutorService executor) {
-		executor.scheduleAtFixedRate(() -> output(), 5000, 750, TimeUnit.MILLISECONDS);
+		pool = Executors.newFixedThreadPool(NUM_THREADS, r -> {
+			Thread t = new Thread(r, "CDS Feed");
+			t.setPriority(Thread.NORM_PRIORITY);
+			t.setDaemon(true);
+			return t;
+		});
+		executor.scheduleAtFixedRate(() -> output(), 5000, 1000, TimeUnit.MILLISECONDS);
+	}
+
+	protected void stop() {
+		if (pool != null)
+			pool.shutdownNow();
 	}
 
 	public void output() {
@@ -35,6 +102,7 @@ public class ContestFeedExecutor {
 		synchronized (feeds) {
 			feeds.add(feed);
 		}
+		wake(feed);
 	}
 
 	public void removeListener(Feed feed) {
@@ -43,19 +111,54 @@ public class ContestFeedExecutor {
 		}
 	}
 
+	/**
+	 * Returns the feed for the given client, or null if there isn't one.
+	 *
+	 * @param client a client
+	 * @return the feed
+	 */
+	public Feed getFeed(Object client) {
+		synchronized (feeds) {
+			for (Feed feed : feeds) {
+				if (feed.client == client)
+					return feed;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Schedule the given feed to write output, unless it is already scheduled.
+	 *
+	 * @param feed a feed
+	 */
+	public void wake(Feed feed) {
+		if (pool == null || !feed.scheduled.compareAndSet(false, true))
+			return;
+
+		try {
+			pool.execute(() -> {
+				feed.scheduled.set(false);
+				try {
+					if (!feed.doOutput())
+						removeListener(feed);
+				} catch (Throwable t) {
+					Trace.trace(Trace.ERROR, "Error notifying feeds", t);
+				}
+			});
+		} catch (Exception e) {
+			// executor shut down
+			feed.scheduled.set(false);
+		}
+	}
+
 	private void notifyListeners() {
 		Feed[] list = null;
 		synchronized (feeds) {
 			list = feeds.toArray(new Feed[0]);
 		}
 
-		for (Feed feed : list) {
-			try {
-				if (!feed.doOutput())
-					removeListener(feed);
-			} catch (Throwable t) {
-				Trace.trace(Trace.ERROR, "Error notifying feeds", t);
-			}
-		}
+		for (Feed feed : list)
+			wake(feed);
 	}
-}
\ No newline at end of file
+}
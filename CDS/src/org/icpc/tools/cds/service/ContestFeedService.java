@@ -6,91 +6,147 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.StringTokenizer;
 
 import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.icpc.tools.cds.CDSConfig;
 import org.icpc.tools.cds.ConfiguredContest;
 import org.icpc.tools.cds.service.ContestFeedExecutor.Feed;
-import org.icpc.tools.cds.service.ContestObjectQueue.ContestObjectDelta;
 import org.icpc.tools.cds.util.HttpHelper;
 import org.icpc.tools.contest.Trace;
-import org.icpc.tools.contest.model.IContestListener;
 import org.icpc.tools.contest.model.IContestObject;
 import org.icpc.tools.contest.model.IContestObject.ContestType;
 import org.icpc.tools.contest.model.IContestObjectFilter;
 import org.icpc.tools.contest.model.TypeFilter;
 import org.icpc.tools.contest.model.feed.ContestSource;
 import org.icpc.tools.contest.model.feed.DiskContestSource;
-import org.icpc.tools.contest.model.feed.NDJSONFeedWriter;
 import org.icpc.tools.contest.model.internal.Contest;
 
 public class ContestFeedService {
-	protected static void doStream(HttpServletRequest request, IContestObjectFilter filter, PrintWriter writer2,
-			Contest contest, int ind, ConfiguredContest cc) {
-		NDJSONFeedWriter writer = new NDJSONFeedWriter(writer2, contest);
+	private static final long HEARTBEAT_INTERVAL = 90_000L;
 
-		final ContestObjectQueue queue = new ContestObjectQueue(ind);
-		IContestListener listener = (contest2, obj, d) -> queue.add(obj, d);
-		contest.addListenerFromStart(listener);
+	protected static void doStream(HttpServletRequest request, IContestObjectFilter filter, ServletOutputStream out,
+			Contest contest, int ind, ConfiguredContest cc) {
+		EventFeedCache cache = EventFeedCache.getCache(contest);
+		ContestFeedExecutor executor = ContestFeedExecutor.getInstance();
+		String host = HttpHelper.getHost(request);
+		String user = request.getRemoteUser();
+		long connectTime = System.currentTimeMillis();
 
 		final AsyncContext asyncCtx = request.startAsync();
 		asyncCtx.setTimeout(0); // no timeout
 		cc.add(asyncCtx);
-		ContestFeedExecutor.getInstance().addFeedSource(new Feed() {
-			protected int count = 120;
-			protected int ind3 = ind;
+
+		Feed feed = new Feed(asyncCtx) {
+			protected long lastWrite = connectTime;
+			protected int next = ind;
+			protected boolean removed;
 
 			@Override
-			public synchronized boolean doOutput() {
-				try {
-					HttpHelper.setThreadHost(request);
-					count++;
+			protected synchronized boolean doOutput() {
+				if (removed)
+					return false;
 
+				try {
 					boolean isDone = contest.isDoneUpdating();
-					ContestObjectDelta co = queue.poll();
-					while (co != null) {
-						IContestObject obj = filter.filter(co.obj);
-						if (obj != null) {
-							writer.writeEvent(obj, ind3++, co.d);
-							count = 0;
+					boolean written = false;
+
+					// only write while the client can accept data without blocking, otherwise we'll be
+					// woken up again when it can
+					while (out.isReady() && next < cache.size()) {
+						IContestObject co = cache.getObject(next);
+						IContestObject obj = filter.filter(co);
+						if (obj == co) {
+							out.write(cache.getLine(host, next));
+							written = true;
+						} else if (obj != null) {
+							out.write(cache.encode(host, next, obj));
+							written = true;
 						}
-						co = queue.poll();
+						recordLatency(System.currentTimeMillis() - Math.max(connectTime, cache.getTime(next)));
+						next++;
 					}
-					writer2.flush();
-					/*if (writer.checkError()) {
-						remove();
-						return false;
-					}*/
-					if (isDone) {
+
+					long now = System.currentTimeMillis();
+					if (!out.isReady()) {
+						if (isTooSlow(now)) {
+							Trace.trace(Trace.WARNING, "Disconnecting slow event feed client " + user + ", backlog " + getBacklog());
+							remove();
+							return false;
+						}
+						return true;
+					}
+
+					if (written) {
+						out.flush();
+						lastWrite = now;
+					} else if (now - lastWrite > HEARTBEAT_INTERVAL) {
+						out.write('\n');
+						out.flush();
+						lastWrite = now;
+					}
+
+					if (isDone && next >= cache.size()) {
 						remove();
 						return false;
 					}
-					if (count > 120) {
-						writer.writeHeartbeat();
-						count = 0;
-					}
 					return true;
 				} catch (Throwable t) {
 					// failed to write to stream
-					t.printStackTrace();
+					Trace.trace(Trace.INFO, "Event feed client disconnected: " + t.getMessage());
 					remove();
 					return false;
 				}
 			}
 
-			protected void remove() {
-				contest.removeListener(listener);
+			private boolean isTooSlow(long now) {
+				int timeout = CDSConfig.getInstance().getSlowFeedTimeout();
+				if (timeout <= 0 || next >= cache.size())
+					return false;
+
+				// clients reading from the start are only behind once they've had time to catch up
+				return now - Math.max(connectTime, cache.getTime(next)) > timeout * 1000L;
+			}
+
+			@Override
+			protected int getBacklog() {
+				return Math.max(0, cache.size() - next);
+			}
+
+			protected synchronized void remove() {
+				if (removed)
+					return;
+
+				removed = true;
+				cache.removeListener(wakeListener);
 				asyncCtx.complete();
 				cc.remove(asyncCtx);
 			}
+		};
+
+		// switch to non-blocking output before anything is written
+		out.setWriteListener(new WriteListener() {
+			@Override
+			public void onWritePossible() throws IOException {
+				executor.wake(feed);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				executor.wake(feed);
+			}
 		});
+
+		cache.addListener(feed.wakeListener);
+		executor.addFeedSource(feed);
 	}
 
 	/**
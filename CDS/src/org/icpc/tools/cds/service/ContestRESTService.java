@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.StringTokenizer;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -108,7 +109,7 @@ public class ContestRESTService extends HttpServlet {
 				CompositeFilter filter = new CompositeFilter();
 				ContestFeedService.addFeedEventFilter(request, filter);
 
-				PrintWriter pw = response.getWriter();
+				ServletOutputStream out = response.getOutputStream();
 				response.setContentType("application/json");
 				cc.incrementFeed();
 				int ind = getSinceIdIndex(request, contest);
@@ -118,7 +119,7 @@ public class ContestRESTService extends HttpServlet {
 				}
 				if (ind == -1)
 					ind = 0;
-				ContestFeedService.doStream(request, filter, pw, contest, ind, cc);
+				ContestFeedService.doStream(request, filter, out, contest, ind, cc);
 				return;
 			} else if ("scoreboard".equals(segments[1])) {
 				int ind = getAfterEventIndex(request, contest);
@@ -126,10 +127,14 @@ public class ContestRESTService extends HttpServlet {
 					response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid event id");
 					return;
 				}
-				contest = Scoreboard.getScoreboard(contest, ind);
 				cc.incrementScoreboard();
+				Contest sc = Scoreboard.getScoreboard(contest, ind);
+				if (sc == contest) {
+					ScoreboardCache.getCache(contest).write(request, response, ScoreboardCache.Type.SCOREBOARD);
+					return;
+				}
 				response.setContentType("application/json");
-				Scoreboard.writeScoreboard(response.getWriter(), contest);
+				Scoreboard.writeScoreboard(response.getWriter(), sc);
 				return;
 			} else if ("projectedScoreboard".equals(segments[1])) {
 				int ind = getAfterEventIndex(request, contest);
@@ -137,10 +142,14 @@ public class ContestRESTService extends HttpServlet {
 					response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid event id");
 					return;
 				}
-				contest = Scoreboard.getScoreboard(contest, ind);
 				cc.incrementScoreboard();
+				Contest sc = Scoreboard.getScoreboard(contest, ind);
+				if (sc == contest) {
+					ScoreboardCache.getCache(contest).write(request, response, ScoreboardCache.Type.PROJECTED);
+					return;
+				}
 				response.setContentType("application/json");
-				ProjectionScoreboardService.writeScoreboard(response.getWriter(), contest);
+				ProjectionScoreboardService.writeScoreboard(response.getWriter(), sc);
 				return;
 			} else if ("optimisticScoreboard".equals(segments[1])) {
 				int ind = getAfterEventIndex(request, contest);
@@ -148,11 +157,15 @@ public class ContestRESTService extends HttpServlet {
 					response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid event id");
 					return;
 				}
-				contest = Scoreboard.getScoreboard(contest, ind);
 				cc.incrementScoreboard();
+				Contest sc = Scoreboard.getScoreboard(contest, ind);
+				if (sc == contest) {
+					ScoreboardCache.getCache(contest).write(request, response, ScoreboardCache.Type.OPTIMISTIC);
+					return;
+				}
 				response.setContentType("application/json");
-				OptimisticScoreboardService.beOptimistic(contest);
-				Scoreboard.writeScoreboard(response.getWriter(), contest);
+				OptimisticScoreboardService.beOptimistic(sc);
+				Scoreboard.writeScoreboard(response.getWriter(), sc);
 				return;
 			}
 		}
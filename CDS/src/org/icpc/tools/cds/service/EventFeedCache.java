@@ -0,0 +1,269 @@
+package org.icpc.tools.cds.service;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.icpc.tools.contest.Trace;
+import org.icpc.tools.contest.model.IContest;
+import org.icpc.tools.contest.model.IContestListener;
+import org.icpc.tools.contest.model.IContestObject;
+import org.icpc.tools.contest.model.feed.JSONEncoder;
+import org.icpc.tools.contest.model.feed.NDJSONFeedWriter;
+import org.icpc.tools.contest.model.internal.Contest;
+
+/**
+ * A shared, append-only log of the events in one contest (i.e. one role). Every event feed client
+ * reads from the same log using its own cursor (event index), so connecting doesn't copy the
+ * contest and memory doesn't grow with the number of clients.
+ *
+ * Events are also cached as encoded NDJSON lines, encoded the first time any client needs them, so
+ * every client writes the same bytes. File references depend on the host of each request, so they
+ * are cached with a placeholder that is replaced when the line is written.
+ *
+ * The log holds a reference to every event since the start of the contest (clients may connect
+ * at any time and replay from the beginning), so it is only released when the contest is:
+ * {@link #release(Contest)} drops the cache and its listener as soon as a contest is removed or
+ * reloaded.
+ */
+public class EventFeedCache implements IContestListener {
+	private static final int ARRAY_SIZE = 1000;
+
+	// placeholder for the host in cached lines. A raw NUL is never valid in JSON, so it can't be
+	// confused with anything in the contest data
+	private static final String HOST_MARKER = "\u0000";
+	private static final byte HOST_MARKER_BYTE = 0;
+
+	// keyed by identity, since a contest's hash code changes with every event
+	private static final Map<Contest, EventFeedCache> caches = new IdentityHashMap<>();
+
+	private final StringWriter sw = new StringWriter(512);
+	private final NDJSONFeedWriter writer;
+
+	private IContestObject[][] objs = new IContestObject[20][];
+	private Delta[][] deltas = new Delta[20][];
+	private long[][] times = new long[20][];
+	private int size;
+
+	// encoded lines, with file references using the host placeholder
+	private byte[][][] lines = new byte[20][][];
+	private boolean[][] hasHost = new boolean[20][];
+
+	private final List<Runnable> listeners = new ArrayList<>();
+
+	private EventFeedCache(Contest contest) {
+		writer = new NDJSONFeedWriter(new PrintWriter(sw), contest);
+	}
+
+	/**
+	 * Returns the shared event log for the given contest, creating it if necessary.
+	 *
+	 * @param contest a contest
+	 * @return the event feed cache
+	 */
+	public static EventFeedCache getCache(Contest contest) {
+		synchronized (caches) {
+			EventFeedCache cache = caches.get(contest);
+			if (cache == null) {
+				cache = new EventFeedCache(contest);
+				contest.addListenerFromStart(cache);
+				caches.put(contest, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Release the event log for the given contest, if there is one. Clients that are still
+	 * connected keep reading from the old log, but it no longer grows.
+	 *
+	 * @param contest a contest
+	 */
+	public static void release(Contest contest) {
+		if (contest == null)
+			return;
+
+		EventFeedCache cache = null;
+		synchronized (caches) {
+			cache = caches.remove(contest);
+		}
+		if (cache != null)
+			contest.removeListener(cache);
+	}
+
+	@Override
+	public void contestChanged(IContest contest, IContestObject obj, Delta d) {
+		synchronized (this) {
+			int arr = size / ARRAY_SIZE;
+			int ind = size % ARRAY_SIZE;
+			if (arr >= objs.length) {
+				int newLen = objs.length * 2;
+				IContestObject[][] tempObjs = new IContestObject[newLen][];
+				System.arraycopy(objs, 0, tempObjs, 0, objs.length);
+				objs = tempObjs;
+				Delta[][] tempDeltas = new Delta[newLen][];
+				System.arraycopy(deltas, 0, tempDeltas, 0, deltas.length);
+				deltas = tempDeltas;
+				long[][] tempTimes = new long[newLen][];
+				System.arraycopy(times, 0, tempTimes, 0, times.length);
+				times = tempTimes;
+			}
+			if (objs[arr] == null) {
+				objs[arr] = new IContestObject[ARRAY_SIZE];
+				deltas[arr] = new Delta[ARRAY_SIZE];
+				times[arr] = new long[ARRAY_SIZE];
+			}
+			objs[arr][ind] = obj;
+			deltas[arr][ind] = d;
+			times[arr][ind] = System.currentTimeMillis();
+			size++;
+		}
+
+		Runnable[] list = null;
+		synchronized (listeners) {
+			list = listeners.toArray(new Runnable[0]);
+		}
+
+		for (Runnable r : list) {
+			try {
+				r.run();
+			} catch (Throwable t) {
+				Trace.trace(Trace.ERROR, "Error notifying feed listener", t);
+			}
+		}
+	}
+
+	/**
+	 * Add a listener that is notified whenever a new event is added to the log.
+	 *
+	 * @param r a listener
+	 */
+	public void addListener(Runnable r) {
+		synchronized (listeners) {
+			listeners.add(r);
+		}
+	}
+
+	public void removeListener(Runnable r) {
+		synchronized (listeners) {
+			listeners.remove(r);
+		}
+	}
+
+	/**
+	 * Returns the number of events in the log.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized IContestObject getObject(int index) {
+		return objs[index / ARRAY_SIZE][index % ARRAY_SIZE];
+	}
+
+	/**
+	 * Returns the time (in ms) that the given event was added to the log.
+	 */
+	public synchronized long getTime(int index) {
+		return times[index / ARRAY_SIZE][index % ARRAY_SIZE];
+	}
+
+	/**
+	 * Returns the encoded event feed line (including trailing newline) for the event at the given
+	 * index, encoding and caching it if no client has needed it before.
+	 *
+	 * @param host the host used in file references
+	 * @param index the event index
+	 * @return the encoded line
+	 */
+	public byte[] getLine(String host, int index) {
+		int arr = index / ARRAY_SIZE;
+		int ind = index % ARRAY_SIZE;
+		byte[] b = null;
+		boolean host2 = false;
+		synchronized (this) {
+			if (arr >= lines.length) {
+				byte[][][] temp = new byte[objs.length][][];
+				System.arraycopy(lines, 0, temp, 0, lines.length);
+				lines = temp;
+				boolean[][] temp2 = new boolean[objs.length][];
+				System.arraycopy(hasHost, 0, temp2, 0, hasHost.length);
+				hasHost = temp2;
+			}
+			if (lines[arr] == null) {
+				lines[arr] = new byte[ARRAY_SIZE][];
+				hasHost[arr] = new boolean[ARRAY_SIZE];
+			}
+
+			b = lines[arr][ind];
+			if (b == null) {
+				b = encode(HOST_MARKER, index, objs[arr][ind]);
+				lines[arr][ind] = b;
+				hasHost[arr][ind] = indexOf(b, HOST_MARKER_BYTE) >= 0;
+			}
+			host2 = hasHost[arr][ind];
+		}
+
+		if (!host2)
+			return b;
+
+		return replaceHost(b, host);
+	}
+
+	private static int indexOf(byte[] b, byte c) {
+		for (int i = 0; i < b.length; i++) {
+			if (b[i] == c)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Replace the host placeholder in an encoded line with the given host.
+	 */
+	private static byte[] replaceHost(byte[] b, String host) {
+		byte[] h = host.getBytes(StandardCharsets.UTF_8);
+		int count = 0;
+		for (byte c : b) {
+			if (c == HOST_MARKER_BYTE)
+				count++;
+		}
+
+		byte[] out = new byte[b.length + count * (h.length - 1)];
+		int j = 0;
+		for (byte c : b) {
+			if (c == HOST_MARKER_BYTE) {
+				System.arraycopy(h, 0, out, j, h.length);
+				j += h.length;
+			} else
+				out[j++] = c;
+		}
+		return out;
+	}
+
+	/**
+	 * Encodes an event feed line without caching it, e.g. for an object that has been modified by a
+	 * client's filter.
+	 *
+	 * @param host the host used in file references
+	 * @param index the event index
+	 * @param obj the contest object
+	 * @return the encoded line
+	 */
+	public synchronized byte[] encode(String host, int index, IContestObject obj) {
+		// restore the thread's host afterward, since the thread is shared with other requests
+		String oldHost = JSONEncoder.getThreadHost();
+		JSONEncoder.setThreadHost(host);
+		try {
+			writer.writeEvent(obj, index, deltas[index / ARRAY_SIZE][index % ARRAY_SIZE]);
+			return sw.toString().getBytes(StandardCharsets.UTF_8);
+		} finally {
+			sw.getBuffer().setLength(0);
+			JSONEncoder.setThreadHost(oldHost);
+		}
+	}
+}
@@ -51,6 +51,7 @@ public class ExecutorListener implements ServletContextListener {
 			cc.logMetrics();
 
 		executor.shutdownNow();
+		ContestFeedExecutor.getInstance().stop();
 
 		if (VideoAggregator.isRunning())
 			VideoAggregator.getInstance().shutdownNow();
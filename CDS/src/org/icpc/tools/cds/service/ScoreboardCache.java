@@ -0,0 +1,190 @@
+package org.icpc.tools.cds.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.icpc.tools.cds.util.HttpHelper;
+import org.icpc.tools.contest.model.IContest;
+import org.icpc.tools.contest.model.IContestListener;
+import org.icpc.tools.contest.model.IContestObject;
+import org.icpc.tools.contest.model.Scoreboard;
+import org.icpc.tools.contest.model.internal.Contest;
+
+/**
+ * A cache of the encoded scoreboards of one contest (i.e. one role). Scoreboards are regenerated
+ * on the next request after an event that can change the standings, so polling clients get the
+ * same pre-encoded (and, if they accept it, pre-gzipped) bytes and can revalidate with an ETag.
+ *
+ * Since events that don't affect the standings (runs, clarifications, etc) don't invalidate the
+ * cache, the event id in a cached scoreboard is the last event that changed it and not
+ * necessarily the latest event in the contest.
+ */
+public class ScoreboardCache implements IContestListener {
+	public enum Type {
+		SCOREBOARD, PROJECTED, OPTIMISTIC
+	}
+
+	// keyed by identity, since a contest's hash code changes with every event. Caches are removed
+	// by release(), and only keep a weak reference back to their contest
+	private static final Map<Contest, ScoreboardCache> caches = new IdentityHashMap<>();
+
+	private static class Entry {
+		private int version;
+		private byte[] bytes;
+		private byte[] gzip;
+		private String etag;
+	}
+
+	private final WeakReference<Contest> contestRef;
+	private volatile int standingsVersion;
+	private volatile int eventVersion;
+
+	private final Entry[] entries = new Entry[Type.values().length];
+	private final Object[] locks = new Object[Type.values().length];
+
+	private ScoreboardCache(Contest contest) {
+		contestRef = new WeakReference<>(contest);
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+	}
+
+	/**
+	 * Returns the scoreboard cache for the given contest, creating it if necessary.
+	 *
+	 * @param contest a contest
+	 * @return the scoreboard cache
+	 */
+	public static ScoreboardCache getCache(Contest contest) {
+		synchronized (caches) {
+			ScoreboardCache cache = caches.get(contest);
+			if (cache == null) {
+				cache = new ScoreboardCache(contest);
+				contest.addListener(cache);
+				caches.put(contest, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Release the scoreboard cache for the given contest, if there is one.
+	 *
+	 * @param contest a contest
+	 */
+	public static void release(Contest contest) {
+		if (contest == null)
+			return;
+
+		ScoreboardCache cache = null;
+		synchronized (caches) {
+			cache = caches.remove(contest);
+		}
+		if (cache != null)
+			contest.removeListener(cache);
+	}
+
+	@Override
+	public void contestChanged(IContest contest2, IContestObject obj, Delta d) {
+		eventVersion++;
+		if (Scoreboard.affectsStandings(obj.getType()))
+			standingsVersion++;
+	}
+
+	private Entry getEntry(Type type) {
+		Contest contest = contestRef.get();
+		synchronized (locks[type.ordinal()]) {
+			// the contest has been released, so all that's left is the last scoreboard
+			if (contest == null)
+				return entries[type.ordinal()];
+
+			// the projected scoreboard depends on contest time, so it changes with every event
+			int version = (type == Type.PROJECTED) ? eventVersion : standingsVersion;
+			Entry entry = entries[type.ordinal()];
+			if (entry != null && entry.version == version)
+				return entry;
+
+			StringWriter sw = new StringWriter(64 * 1024);
+			PrintWriter pw = new PrintWriter(sw);
+			if (type == Type.SCOREBOARD)
+				Scoreboard.writeScoreboard(pw, contest);
+			else if (type == Type.PROJECTED)
+				ProjectionScoreboardService.writeScoreboard(pw, contest);
+			else {
+				// don't add optimistic judgements to the shared contest
+				Contest c = contest.clone(false);
+				OptimisticScoreboardService.beOptimistic(c);
+				Scoreboard.writeScoreboard(pw, c);
+			}
+			pw.flush();
+
+			entry = new Entry();
+			entry.version = version;
+			entry.bytes = sw.toString().getBytes(StandardCharsets.UTF_8);
+			CRC32 crc = new CRC32();
+			crc.update(entry.bytes);
+			entry.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(entry.bytes.length) + "\"";
+			entries[type.ordinal()] = entry;
+			return entry;
+		}
+	}
+
+	private byte[] getGzip(Type type, Entry entry) throws IOException {
+		synchronized (locks[type.ordinal()]) {
+			if (entry.gzip == null) {
+				ByteArrayOutputStream bout = new ByteArrayOutputStream(entry.bytes.length / 4);
+				GZIPOutputStream gout = new GZIPOutputStream(bout);
+				gout.write(entry.bytes);
+				gout.close();
+				entry.gzip = bout.toByteArray();
+			}
+			return entry.gzip;
+		}
+	}
+
+	/**
+	 * Write the current scoreboard of the given type, or a 304 if the client already has it.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param type the type of scoreboard
+	 * @throws IOException
+	 */
+	public void write(HttpServletRequest request, HttpServletResponse response, Type type) throws IOException {
+		Entry entry = getEntry(type);
+		if (entry == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Contest not found");
+			return;
+		}
+
+		response.setContentType("application/json");
+		response.setHeader("ETag", entry.etag);
+		response.setHeader("Vary", "Accept-Encoding");
+
+		if (HttpHelper.matchesETag(request, entry.etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		byte[] b = entry.bytes;
+		if (HttpHelper.acceptsGzip(request)) {
+			b = getGzip(type, entry);
+			response.setHeader("Content-Encoding", "gzip");
+		}
+
+		response.setContentLength(b.length);
+		ServletOutputStream out = response.getOutputStream();
+		out.write(b);
+	}
+}
@@ -0,0 +1,82 @@
+package org.icpc.tools.cds.service.test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.icpc.tools.cds.util.Role;
+import org.icpc.tools.contest.model.internal.ContestData;
+import org.icpc.tools.contest.model.internal.Judgement;
+import org.icpc.tools.contest.model.internal.Submission;
+
+/**
+ * Stress test of the contest object store: fills a store that keeps history with 10M events (or
+ * ?events=n), then removes most of a store without history to check that segments are released.
+ */
+@WebServlet(urlPatterns = "/test/contestData")
+@ServletSecurity(@HttpConstraint(transportGuarantee = ServletSecurity.TransportGuarantee.CONFIDENTIAL, rolesAllowed = {
+		Role.ADMIN, Role.BLUE }))
+public class ContestDataTestService extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!Role.isBlue(request))
+			return;
+
+		int numEvents = 10_000_000;
+		try {
+			numEvents = Integer.parseInt(request.getParameter("events"));
+		} catch (Exception e) {
+			// use default
+		}
+
+		PrintWriter pw = response.getWriter();
+
+		// alternate between two versions of the same judgement so that every event is an update
+		Submission s = new Submission();
+		s.add("id", "1");
+		Judgement[] j = new Judgement[] { new Judgement("1", s, "AC"), new Judgement("1", s, "WA") };
+
+		ContestData data = new ContestData(true);
+		long time = System.nanoTime();
+		for (int i = 0; i < numEvents; i++)
+			data.add(j[i % 2]);
+		time = System.nanoTime() - time;
+
+		pw.println("Events: " + data.size() + ", time: " + (time / 1_000_000) + "ms, footprint: "
+				+ (data.getMemoryFootprint() / 1024) + "kB");
+
+		int count = 0;
+		for (int i = 0; i < data.size(); i += 1000)
+			if (data.get(i) == j[i % 2])
+				count++;
+		pw.println("Verified: " + (count == (data.size() + 999) / 1000));
+		data = null;
+
+		// remove most of a store without history
+		data = new ContestData(false);
+		for (int i = 0; i < 30_000; i++) {
+			Submission s2 = new Submission();
+			s2.add("id", i + "");
+			data.add(s2);
+		}
+		long before = data.getMemoryFootprint();
+		time = System.nanoTime();
+		data.removeSince(5_000);
+		time = System.nanoTime() - time;
+
+		pw.println("Removed: " + data.size() + " left, time: " + (time / 1_000_000) + "ms, footprint: "
+				+ (before / 1024) + "kB -> " + (data.getMemoryFootprint() / 1024) + "kB");
+	}
+
+	// 10M events (previously failed at 2M): 50429ms, footprint 156297kB
+	// Remove 25000 of 30000: 8371ms, footprint 2855kB -> 980kB
+}
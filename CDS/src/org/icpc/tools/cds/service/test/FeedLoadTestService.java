@@ -0,0 +1,73 @@
+package org.icpc.tools.cds.service.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.icpc.tools.cds.CDSConfig;
+import org.icpc.tools.cds.util.Role;
+import org.icpc.tools.contest.model.feed.NDJSONFeedParser;
+import org.icpc.tools.contest.model.feed.NDJSONFeedWriter;
+import org.icpc.tools.contest.model.internal.Contest;
+
+/**
+ * Times parsing and loading the contest's event feed, both once and twice in a row (i.e. every
+ * event in the second copy is a duplicate).
+ */
+@WebServlet(urlPatterns = "/test/load")
+@ServletSecurity(@HttpConstraint(transportGuarantee = ServletSecurity.TransportGuarantee.CONFIDENTIAL, rolesAllowed = {
+		Role.ADMIN, Role.BLUE }))
+public class FeedLoadTestService extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!Role.isBlue(request))
+			return;
+
+		Contest contest = (Contest) CDSConfig.getContests()[0].getContestByRole(request);
+
+		StringWriter sw = new StringWriter();
+		new NDJSONFeedWriter(new PrintWriter(sw)).writeContest(contest);
+		byte[] once = sw.toString().getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream bout = new ByteArrayOutputStream(once.length * 2);
+		bout.write(once);
+		bout.write(once);
+		byte[] twice = bout.toByteArray();
+
+		long onceTime = 0;
+		long twiceTime = 0;
+		try {
+			for (int i = 0; i < 5; i++) {
+				long time = System.nanoTime();
+				new NDJSONFeedParser().parse(new Contest(), new ByteArrayInputStream(once));
+				onceTime += System.nanoTime() - time;
+
+				time = System.nanoTime();
+				new NDJSONFeedParser().parse(new Contest(), new ByteArrayInputStream(twice));
+				twiceTime += System.nanoTime() - time;
+			}
+		} catch (Exception e) {
+			throw new ServletException(e);
+		}
+
+		response.getWriter().println("Events: " + contest.getNumObjects() + ", bytes: " + once.length);
+		response.getWriter().println("Load: " + (onceTime / 5 / 1_000_000) + "ms");
+		response.getWriter().println("Load with duplicates: " + (twiceTime / 5 / 1_000_000) + "ms");
+	}
+
+	// 160k events (20k submissions, 100k runs) duplicate pass before change: 1600ms & 1215MB allocated,
+	// after: 700ms & 872MB
+	// Streaming parser, 160k events before change: 1322ms & 893MB allocated, after: 1111ms & 391MB
+}
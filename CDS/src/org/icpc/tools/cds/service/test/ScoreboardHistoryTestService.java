@@ -0,0 +1,87 @@
+package org.icpc.tools.cds.service.test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.icpc.tools.cds.CDSConfig;
+import org.icpc.tools.cds.util.Role;
+import org.icpc.tools.contest.model.IContestObject;
+import org.icpc.tools.contest.model.IContestObjectFilter;
+import org.icpc.tools.contest.model.Scoreboard;
+import org.icpc.tools.contest.model.internal.Contest;
+
+/**
+ * Times historic scoreboards (?after_event_id) at 50 points spread over the contest, comparing a
+ * full clone of the contest up to each event with the checkpointed scoreboard.
+ */
+@WebServlet(urlPatterns = "/test/scoreboardHistory")
+@ServletSecurity(@HttpConstraint(transportGuarantee = ServletSecurity.TransportGuarantee.CONFIDENTIAL, rolesAllowed = {
+		Role.ADMIN, Role.BLUE }))
+public class ScoreboardHistoryTestService extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	private static final int NUM = 50;
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!Role.isBlue(request))
+			return;
+
+		Contest contest = CDSConfig.getContests()[0].getContestByRole(request);
+		int n = contest.getNumObjects();
+		int[] ind = new int[NUM];
+		for (int i = 0; i < NUM; i++)
+			ind[i] = 1 + (i + 1) * (n - 2) / (NUM + 1);
+
+		long cloneTime = System.nanoTime();
+		String[] sb = new String[NUM];
+		for (int i = 0; i < NUM; i++)
+			sb[i] = toString(clone(contest, ind[i]));
+		cloneTime = System.nanoTime() - cloneTime;
+
+		long checkpointTime = System.nanoTime();
+		int mismatch = 0;
+		for (int i = 0; i < NUM; i++)
+			if (!sb[i].equals(toString(Scoreboard.getScoreboard(contest, ind[i]))))
+				mismatch++;
+		checkpointTime = System.nanoTime() - checkpointTime;
+
+		PrintWriter pw = response.getWriter();
+		pw.println("Events: " + n);
+		pw.println("Clone: " + (cloneTime / NUM / 1000) + "us per scoreboard");
+		pw.println("Checkpoint: " + (checkpointTime / NUM / 1000) + "us per scoreboard");
+		pw.println("Mismatches: " + mismatch);
+	}
+
+	private static Contest clone(Contest contest, int eventIndex) {
+		return contest.clone(true, new IContestObjectFilter() {
+			private int count = 1;
+
+			@Override
+			public IContestObject filter(IContestObject obj) {
+				if (count >= eventIndex)
+					return null;
+				count++;
+				return obj;
+			}
+		});
+	}
+
+	private static String toString(Contest contest) {
+		StringWriter sw = new StringWriter();
+		Scoreboard.writeScoreboard(new PrintWriter(sw), contest);
+		return sw.toString();
+	}
+
+	// 98k events (130 teams, 3500 submissions with 25 runs each): clone 40ms per scoreboard,
+	// checkpoint 5.5ms (first request includes building the checkpoints)
+}
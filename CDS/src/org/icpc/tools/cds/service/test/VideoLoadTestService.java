@@ -0,0 +1,251 @@
+package org.icpc.tools.cds.service.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.icpc.tools.cds.util.Role;
+import org.icpc.tools.cds.video.VideoAggregator;
+import org.icpc.tools.cds.video.VideoStream;
+import org.icpc.tools.cds.video.VideoStreamListener;
+
+/**
+ * Load test for reading team video: serves hundreds of synthetic MPEG-TS streams from a local
+ * server, reads them all through a separate video aggregator, and reports throughput and the
+ * number of threads used.
+ *
+ * Parameters: streams (default 300), seconds (default 20), rate in kB/s per stream (default 350,
+ * about an HD webcam).
+ */
+@WebServlet(urlPatterns = "/test/videoLoad")
+@ServletSecurity(@HttpConstraint(transportGuarantee = ServletSecurity.TransportGuarantee.CONFIDENTIAL, rolesAllowed = {
+		Role.ADMIN }))
+public class VideoLoadTestService extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	private static final int PACKET_LEN = 188;
+	private static final int TICK = 20; // ms
+
+	/**
+	 * A local server that sends synthetic MPEG-TS packets to every connection at a fixed rate, all
+	 * from one thread.
+	 */
+	private static class SourceServer extends Thread {
+		private final ServerSocketChannel server;
+		private final Selector selector;
+		private final List<SocketChannel> clients = new ArrayList<>();
+		private final byte[] tick;
+		private volatile boolean done;
+
+		protected SourceServer(int rate) throws IOException {
+			super("Video Load Source");
+			setDaemon(true);
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress("127.0.0.1", 0), 1000);
+			server.configureBlocking(false);
+			selector = Selector.open();
+			server.register(selector, SelectionKey.OP_ACCEPT);
+
+			// one tick of packets, the first one marked as a keyframe
+			int numPackets = Math.max(1, rate * 1024 / PACKET_LEN * TICK / 1000);
+			tick = new byte[numPackets * PACKET_LEN];
+			for (int i = 0; i < numPackets; i++) {
+				int p = i * PACKET_LEN;
+				tick[p] = 0x47;
+				tick[p + 3] = 0x30;
+				tick[p + 4] = 1;
+				tick[p + 5] = (byte) (i == 0 ? 0x40 : 0);
+			}
+		}
+
+		protected int getPort() throws IOException {
+			return ((InetSocketAddress) server.getLocalAddress()).getPort();
+		}
+
+		@Override
+		public void run() {
+			byte[] header = "HTTP/1.1 200 OK\r\nContent-Type: video/MP2T\r\nConnection: close\r\n\r\n"
+					.getBytes(StandardCharsets.US_ASCII);
+			ByteBuffer readBuf = ByteBuffer.allocate(4096);
+			long next = System.currentTimeMillis();
+			try {
+				while (!done) {
+					selector.select(Math.max(1, next - System.currentTimeMillis()));
+					Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+					while (iter.hasNext()) {
+						SelectionKey key = iter.next();
+						iter.remove();
+						if (key.isAcceptable()) {
+							SocketChannel sc = server.accept();
+							if (sc == null)
+								continue;
+							sc.configureBlocking(false);
+							sc.register(selector, SelectionKey.OP_READ);
+						} else if (key.isReadable()) {
+							// ignore the request, and start streaming
+							SocketChannel sc = (SocketChannel) key.channel();
+							((Buffer) readBuf).clear();
+							try {
+								if (sc.read(readBuf) < 0) {
+									key.cancel();
+									sc.close();
+									continue;
+								}
+								sc.write(ByteBuffer.wrap(header));
+								key.interestOps(0);
+								clients.add(sc);
+							} catch (IOException e) {
+								key.cancel();
+								sc.close();
+							}
+						}
+					}
+
+					long now = System.currentTimeMillis();
+					if (now < next)
+						continue;
+					next += TICK;
+
+					Iterator<SocketChannel> iter2 = clients.iterator();
+					while (iter2.hasNext()) {
+						SocketChannel sc = iter2.next();
+						try {
+							// like a real source, if the client can't keep up data is lost
+							sc.write(ByteBuffer.wrap(tick));
+						} catch (IOException e) {
+							iter2.remove();
+							sc.close();
+						}
+					}
+				}
+			} catch (IOException e) {
+				// done
+			}
+
+			try {
+				for (SocketChannel sc : clients)
+					sc.close();
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+
+		protected void shutdown() {
+			done = true;
+			selector.wakeup();
+		}
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!Role.isAdmin(request))
+			return;
+
+		int streams = getParam(request, "streams", 300);
+		int seconds = getParam(request, "seconds", 20);
+		int rate = getParam(request, "rate", 350);
+
+		response.setContentType("text/plain");
+		run(streams, seconds, rate, response.getWriter());
+	}
+
+	private static int getParam(HttpServletRequest request, String name, int def) {
+		try {
+			return Integer.parseInt(request.getParameter(name));
+		} catch (Exception e) {
+			return def;
+		}
+	}
+
+	public static void run(int streams, int seconds, int rate, PrintWriter pw) throws IOException {
+		ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+		int threadsBefore = tmx.getThreadCount();
+
+		SourceServer server = new SourceServer(rate);
+		server.start();
+		int port = server.getPort();
+
+		VideoAggregator va = new VideoAggregator();
+		AtomicLong bytes = new AtomicLong();
+		List<VideoStreamListener> listeners = new ArrayList<>();
+		for (int i = 0; i < streams; i++) {
+			va.addReservation("Load " + i, "http://127.0.0.1:" + port + "/" + i);
+			VideoStreamListener listener = new VideoStreamListener(new OutputStream() {
+				@Override
+				public void write(int b) {
+					bytes.incrementAndGet();
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					bytes.addAndGet(len);
+				}
+			}, true);
+			listeners.add(listener);
+			va.addStreamListener(i, listener);
+		}
+
+		// let all streams connect, then measure
+		try {
+			Thread.sleep(3000);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+
+		int threads = tmx.getThreadCount();
+		long start = System.nanoTime();
+		long startBytes = bytes.get();
+		try {
+			Thread.sleep(seconds * 1000L);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+		long time = System.nanoTime() - start;
+		long total = bytes.get() - startBytes;
+
+		int active = 0;
+		for (VideoStream vs : va.getVideoInfo()) {
+			if (vs.getStatus() == VideoAggregator.Status.ACTIVE)
+				active++;
+		}
+
+		for (int i = 0; i < streams; i++)
+			va.removeStreamListener(i, listeners.get(i));
+		va.shutdownNow();
+		server.shutdown();
+
+		pw.println("Streams: " + streams + " (" + active + " active) at " + rate + "kB/s");
+		long bytesPerSec = total / Math.max(1, time / 1_000_000) * 1000;
+		pw.println("Received: " + (bytesPerSec / 1024 / 1024) + " MB/s (expected " + (streams * rate / 1024) + " MB/s)");
+		pw.println("Threads: " + threadsBefore + " -> " + threads);
+		pw.flush();
+	}
+
+	// 300 streams at 350kB/s, 1 cpu: blocking thread per stream 303 threads added, 102MB/s, 7.0s cpu;
+	// selector 3 threads added (1 is the source server), 102MB/s, 4.0s cpu. 1000 streams with the
+	// selector: 3 threads added, 340MB/s
+}
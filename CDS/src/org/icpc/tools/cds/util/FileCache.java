@@ -0,0 +1,108 @@
+package org.icpc.tools.cds.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.icpc.tools.cds.CDSConfig;
+
+/**
+ * An in-memory, least recently used cache of small contest files (logos, photos, etc) so that
+ * bursts of requests for the same files are served without reading from disk. The cache is
+ * limited by the total number of bytes, and files are reloaded if they change on disk.
+ */
+public class FileCache {
+	private static class Entry {
+		private final byte[] data;
+		private final long lastModified;
+
+		protected Entry(byte[] data, long lastModified) {
+			this.data = data;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private static final FileCache instance = new FileCache();
+
+	// access-ordered, so iteration starts with the least recently used file
+	private final Map<String, Entry> map = new LinkedHashMap<>(64, 0.75f, true);
+	private long size;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public static FileCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the contents of the given file from the cache, reading and caching it if necessary,
+	 * or null if the file is too large to cache.
+	 *
+	 * @param f a file
+	 * @return the file contents, or null
+	 * @throws IOException if the file can't be read
+	 */
+	public byte[] getBytes(File f) throws IOException {
+		CDSConfig config = CDSConfig.getInstance();
+		long length = f.length();
+		if (length > config.getFileCacheMaxFileSize() || length > config.getFileCacheSize())
+			return null;
+
+		String path = f.getAbsolutePath();
+		long lastModified = f.lastModified();
+		synchronized (this) {
+			Entry entry = map.get(path);
+			if (entry != null && entry.lastModified == lastModified && entry.data.length == length) {
+				hits++;
+				return entry.data;
+			}
+			misses++;
+		}
+
+		// read outside the lock, if two requests both miss they'll both read the file
+		byte[] b = Files.readAllBytes(f.toPath());
+		Entry entry = new Entry(b, lastModified);
+
+		long maxSize = config.getFileCacheSize();
+		synchronized (this) {
+			Entry old = map.put(path, entry);
+			if (old != null)
+				size -= old.data.length;
+			size += b.length;
+
+			Iterator<Entry> iter = map.values().iterator();
+			while (size > maxSize && iter.hasNext()) {
+				Entry e = iter.next();
+				iter.remove();
+				size -= e.data.length;
+				evictions++;
+			}
+		}
+		return b;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getNumFiles() {
+		return map.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+}
@@ -1,10 +1,17 @@
 package org.icpc.tools.cds.util;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -15,7 +22,28 @@ import org.icpc.tools.contest.model.feed.JSONEncoder;
 public class HttpHelper {
 	private static final String OK_CHARS = new String("[]{},.~`?!@#$^&*()-_=+:|");
 
+	// files larger than this use an entity tag based on their size and last modified time instead
+	// of reading the whole file to hash it
+	private static final long MAX_HASH_SIZE = 32 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static class FileTag {
+		private long lastModified;
+		private long length;
+		private String etag;
+	}
+
+	private static final Map<String, FileTag> fileTags = new ConcurrentHashMap<>();
+
 	public static void setThreadHost(HttpServletRequest request) {
+		JSONEncoder.setThreadHost(getHost(request));
+	}
+
+	/**
+	 * Returns the host (and port, if necessary) that should be used in file references for the
+	 * given request.
+	 */
+	public static String getHost(HttpServletRequest request) {
 		StringBuilder sb = new StringBuilder(request.getServerName());
 		if (true) {
 			int port = request.getLocalPort();
@@ -25,68 +53,233 @@ public class HttpHelper {
 				sb.append(":" + port);
 			}
 		}
-		JSONEncoder.setThreadHost(sb.toString());
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a strong entity tag for the given file, based on a hash of its contents. Tags are
+	 * remembered until the file changes, so each file is only read once to compute it.
+	 */
+	private static String getETag(File f) throws IOException {
+		long lastModified = f.lastModified();
+		long length = f.length();
+		String path = f.getAbsolutePath();
+		FileTag tag = fileTags.get(path);
+		if (tag != null && tag.lastModified == lastModified && tag.length == length)
+			return tag.etag;
+
+		tag = new FileTag();
+		tag.lastModified = lastModified;
+		tag.length = length;
+		if (length > MAX_HASH_SIZE)
+			tag.etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+		else {
+			CRC32 crc = new CRC32();
+			try (FileChannel fc = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+				ByteBuffer bb = ByteBuffer.allocate(BUFFER_SIZE);
+				while (fc.read(bb) != -1) {
+					// cast so that this links to the Java 8 methods when built on newer JDKs
+					((Buffer) bb).flip();
+					crc.update(bb.array(), 0, bb.limit());
+					((Buffer) bb).clear();
+				}
+			}
+			tag.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Long.toHexString(length) + "\"";
+		}
+		fileTags.put(path, tag);
+		return tag.etag;
 	}
 
+	/**
+	 * Returns true if the request has an If-None-Match header that matches the given entity tag.
+	 */
+	public static boolean matchesETag(HttpServletRequest request, String etag) {
+		Enumeration<String> en = request.getHeaders("If-None-Match");
+		if (en == null)
+			return false;
+
+		while (en.hasMoreElements()) {
+			String val = en.nextElement();
+			if (val == null)
+				continue;
+			for (String s : val.split(",")) {
+				s = s.trim();
+				if (s.startsWith("W/"))
+					s = s.substring(2);
+				if ("*".equals(s) || etag.equals(s))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the client accepts gzip content encoding.
+	 */
+	public static boolean acceptsGzip(HttpServletRequest request) {
+		Enumeration<String> en = request.getHeaders("Accept-Encoding");
+		if (en == null)
+			return false;
+
+		while (en.hasMoreElements()) {
+			String val = en.nextElement();
+			if (val == null)
+				continue;
+			for (String s : val.split(",")) {
+				s = s.trim();
+				if (s.startsWith("gzip") && !s.replace(" ", "").endsWith("q=0"))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a single byte range (e.g. "bytes=0-499", "bytes=500-", or "bytes=-500") for a file of
+	 * the given length. Returns null if there is no range or it isn't supported (e.g. multiple
+	 * ranges) and the whole file should be sent, or an empty array if the range can't be satisfied.
+	 */
+	private static long[] getRange(String range, long length) {
+		if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0)
+			return null;
+
+		String r = range.substring(6).trim();
+		int ind = r.indexOf('-');
+		if (ind < 0)
+			return null;
+
+		try {
+			long start;
+			long end;
+			if (ind == 0) {
+				// suffix range: last n bytes
+				long n = Long.parseLong(r.substring(1));
+				if (n <= 0)
+					return new long[0];
+				start = Math.max(0, length - n);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(r.substring(0, ind));
+				if (ind == r.length() - 1)
+					end = length - 1;
+				else
+					end = Math.min(length - 1, Long.parseLong(r.substring(ind + 1)));
+			}
+			if (start >= length || start > end)
+				return new long[0];
+			return new long[] { start, end };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Send a file, supporting conditional requests (strong ETag based on the file contents, and
+	 * last modified), single byte ranges, and precompressed variants: if the client accepts gzip
+	 * and there is an up to date copy of the file with a .gz extension next to it, that is sent
+	 * instead. Small files are served from the in-memory file cache, larger ones are written using
+	 * a file channel instead of copying through a buffered stream.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param f the file to send
+	 * @throws IOException
+	 */
 	public static void sendFile(HttpServletRequest request, HttpServletResponse response, File f) throws IOException {
 		if (f == null || !f.exists()) {
 			response.sendError(HttpServletResponse.SC_NOT_FOUND);
 			return;
 		}
 
-		// last-modified
-		long lastModified = f.lastModified() / 1000 * 1000;
-		try {
-			long ifModifiedSince = request.getDateHeader("If-Modified-Since");
-			if (ifModifiedSince != -1 && ifModifiedSince >= lastModified) {
-				response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
-				return;
+		String name = f.getName();
+		response.setHeader("Vary", "Accept-Encoding");
+		if (acceptsGzip(request)) {
+			File gz = new File(f.getParentFile(), name + ".gz");
+			if (gz.exists() && gz.lastModified() >= f.lastModified()) {
+				response.setHeader("Content-Encoding", "gzip");
+				f = gz;
 			}
-		} catch (Exception e) {
-			// ignore, send anyway
 		}
 
-		// etags
-		try {
-			Enumeration<String> ifNoneMatch = request.getHeaders("If-None-Match");
-			if (ifNoneMatch != null) {
-				String current = "e" + lastModified;
-				while (ifNoneMatch.hasMoreElements()) {
-					String val = ifNoneMatch.nextElement();
-					if (current.equals(val)) {
-						response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
-						return;
-					}
+		String etag = getETag(f);
+		long lastModified = f.lastModified() / 1000 * 1000;
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "max-age=1800"); // 30 minutes
+		response.setHeader("Accept-Ranges", "bytes");
+
+		// etags, or last-modified if there are none
+		if (request.getHeader("If-None-Match") != null) {
+			if (matchesETag(request, etag)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		} else {
+			try {
+				long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+				if (ifModifiedSince != -1 && ifModifiedSince >= lastModified) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
 				}
+			} catch (Exception e) {
+				// ignore, send anyway
 			}
-		} catch (Exception e) {
-			// ignore, send anyway
 		}
 
-		String name = f.getName();
 		if (name.endsWith(".jpg") || name.endsWith(".jpeg"))
 			response.setContentType("image/jpeg");
 		else if (name.endsWith(".txt") || name.endsWith(".tsv") || name.endsWith(".yaml") || name.endsWith(".xml"))
 			response.setContentType("text/plain");
 		else if (name.endsWith(".png"))
 			response.setContentType("image/png");
-
-		response.setContentLength((int) f.length());
-		response.setDateHeader("Last-Modified", lastModified);
-		response.setHeader("ETag", "e" + lastModified);
-		response.setHeader("Cache-Control", "max-age=1800"); // 30 minutes
+		else if (name.endsWith(".svg"))
+			response.setContentType("image/svg+xml");
 		response.setHeader("Content-Disposition", "inline; filename=\"" + name + "\"");
 
+		long length = f.length();
+		long start = 0;
+		long end = length - 1;
+
+		// only honour a range if the client still has the current version (If-Range)
+		String ifRange = request.getHeader("If-Range");
+		long[] range = null;
+		if (ifRange == null || ifRange.equals(etag))
+			range = getRange(request.getHeader("Range"), length);
+		if (range != null) {
+			if (range.length == 0) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			start = range[0];
+			end = range[1];
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+		}
+
+		long count = end - start + 1;
+		response.setContentLengthLong(count);
+		if ("HEAD".equals(request.getMethod()))
+			return;
+
 		ServletOutputStream out = response.getOutputStream();
-		BufferedInputStream bin = new BufferedInputStream(new FileInputStream(f));
-		byte[] b = new byte[1024 * 8];
-		int n = bin.read(b);
-		while (n != -1) {
-			out.write(b, 0, n);
-			n = bin.read(b);
+		byte[] b = FileCache.getInstance().getBytes(f);
+		if (b != null && b.length == length) {
+			out.write(b, (int) start, (int) count);
+			return;
 		}
 
-		bin.close();
+		WritableByteChannel outChannel = Channels.newChannel(out);
+		try (FileChannel fc = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			long pos = start;
+			while (count > 0) {
+				long n = fc.transferTo(pos, count, outChannel);
+				if (n <= 0)
+					break;
+				pos += n;
+				count -= n;
+			}
+		}
 	}
 
 	/**
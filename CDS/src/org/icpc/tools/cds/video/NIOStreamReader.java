@@ -0,0 +1,497 @@
+package org.icpc.tools.cds.video;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.icpc.tools.contest.Trace;
+
+/**
+ * Reads plain HTTP video streams using non-blocking I/O, so that a few selector threads can read
+ * hundreds of team streams instead of needing a thread per stream.
+ *
+ * Only the subset of HTTP needed for streaming is supported: a GET request, redirects, and
+ * chunked or identity (read until close) responses.
+ */
+public class NIOStreamReader {
+	private static final int CONNECT_TIMEOUT = 15000;
+	private static final int READ_TIMEOUT = 10000;
+	private static final int MAX_HEADER_SIZE = 16 * 1024;
+	private static final int MAX_REDIRECTS = 5;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int RESOLVER_THREADS = 4;
+
+	public interface IConnectionListener {
+		/**
+		 * Data was read from the stream.
+		 */
+		void data(byte[] b, int off, int len) throws IOException;
+
+		/**
+		 * The connection ended, either normally (error is null) or with an error.
+		 *
+		 * @param error an error message, or null
+		 * @return the number of ms to wait before reconnecting, or -1 to stop
+		 */
+		long closed(String error);
+	}
+
+	/**
+	 * A connection to a stream, which will reconnect when it is closed until the listener says to
+	 * stop or it is terminated.
+	 */
+	public class Connection {
+		private URL url;
+		private final URL originalUrl;
+		private final IConnectionListener listener;
+		private final SelectorThread thread;
+
+		private SocketChannel channel;
+		private ByteBuffer request;
+		private byte[] header;
+		private int headerLen;
+		private boolean inBody;
+		private boolean chunked;
+		private int chunkRemaining;
+		private int chunkState;
+		private StringBuilder chunkSize = new StringBuilder();
+		private int redirects;
+		private int attempt;
+
+		private long timeout;
+		private long reconnectTime = -1;
+		private volatile boolean terminated;
+
+		protected Connection(URL url, IConnectionListener listener, SelectorThread thread) {
+			this.url = url;
+			this.originalUrl = url;
+			this.listener = listener;
+			this.thread = thread;
+		}
+
+		/**
+		 * Close the connection and stop reconnecting.
+		 */
+		public void terminate() {
+			terminated = true;
+			thread.execute(() -> {
+				thread.remove(this);
+				closeChannel();
+			});
+		}
+
+		/**
+		 * Start connecting. The host name is resolved on another thread, since the lookup blocks, and
+		 * the channel is then opened on the selector thread.
+		 */
+		protected void connect() {
+			reconnectTime = -1;
+			header = new byte[1024];
+			headerLen = 0;
+			inBody = false;
+			chunked = false;
+			chunkState = 0;
+			chunkRemaining = 0;
+			chunkSize.setLength(0);
+
+			int port = url.getPort();
+			if (port == -1)
+				port = url.getDefaultPort();
+			String file = url.getFile();
+			if (file == null || file.isEmpty())
+				file = "/";
+
+			String req = "GET " + file + " HTTP/1.1\r\nHost: " + url.getHost()
+					+ (url.getPort() == -1 ? "" : ":" + url.getPort()) + "\r\n"
+					+ "Content-Type: video/MP2T\r\nConnection: close\r\n\r\n";
+			request = ByteBuffer.wrap(req.getBytes(StandardCharsets.US_ASCII));
+
+			int currentAttempt = ++attempt;
+			String host = url.getHost();
+			int port2 = port;
+			resolver.execute(() -> {
+				InetSocketAddress address = new InetSocketAddress(host, port2);
+				thread.execute(() -> open(currentAttempt, address));
+			});
+		}
+
+		private void open(int currentAttempt, InetSocketAddress address) {
+			// ignore if the connection was terminated or restarted during the lookup
+			if (terminated || currentAttempt != attempt)
+				return;
+
+			if (address.isUnresolved()) {
+				close("Unknown host " + address.getHostString());
+				return;
+			}
+
+			try {
+				timeout = System.currentTimeMillis() + CONNECT_TIMEOUT;
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.connect(address);
+				channel.register(thread.selector, SelectionKey.OP_CONNECT, this);
+			} catch (Throwable t) {
+				close(t.getMessage() == null ? t.toString() : t.getMessage());
+			}
+		}
+
+		protected void finishConnect() throws IOException {
+			channel.finishConnect();
+			channel.keyFor(thread.selector).interestOps(SelectionKey.OP_WRITE);
+		}
+
+		protected void write() throws IOException {
+			channel.write(request);
+			if (!request.hasRemaining()) {
+				request = null;
+				timeout = System.currentTimeMillis() + READ_TIMEOUT;
+				channel.keyFor(thread.selector).interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		protected void read(ByteBuffer buf) throws IOException {
+			// cast so that this links to the Java 8 method when built on newer JDKs
+			((Buffer) buf).clear();
+			int n = channel.read(buf);
+			if (n == -1) {
+				// end of stream
+				close(inBody ? null : "Connection closed");
+				return;
+			}
+			timeout = System.currentTimeMillis() + READ_TIMEOUT;
+
+			byte[] b = buf.array();
+			if (!inBody) {
+				int bodyStart = readHeader(b, n);
+				if (bodyStart < 0)
+					return;
+
+				if (bodyStart < n)
+					readBody(b, bodyStart, n - bodyStart);
+				return;
+			}
+
+			readBody(b, 0, n);
+		}
+
+		/**
+		 * Accumulate and parse the response header.
+		 *
+		 * @return the offset of the start of the body, or -1 if the header isn't complete yet
+		 */
+		private int readHeader(byte[] b, int n) throws IOException {
+			for (int i = 0; i < n; i++) {
+				if (headerLen == header.length) {
+					if (headerLen >= MAX_HEADER_SIZE)
+						throw new IOException("Invalid HTTP response");
+					byte[] temp = new byte[header.length * 2];
+					System.arraycopy(header, 0, temp, 0, headerLen);
+					header = temp;
+				}
+				header[headerLen++] = b[i];
+				if (headerLen >= 4 && header[headerLen - 4] == '\r' && header[headerLen - 3] == '\n'
+						&& header[headerLen - 2] == '\r' && header[headerLen - 1] == '\n') {
+					processHeader(new String(header, 0, headerLen, StandardCharsets.ISO_8859_1));
+					if (!inBody) // redirected
+						return -1;
+					return i + 1;
+				}
+			}
+			return -1;
+		}
+
+		private void processHeader(String s) throws IOException {
+			String[] lines = s.split("\r\n");
+			String[] status = lines[0].split(" ");
+			if (status.length < 2 || !status[0].startsWith("HTTP/"))
+				throw new IOException("Invalid HTTP response");
+
+			int httpStatus = Integer.parseInt(status[1]);
+			String location = null;
+			for (int i = 1; i < lines.length; i++) {
+				int ind = lines[i].indexOf(':');
+				if (ind < 0)
+					continue;
+				String name = lines[i].substring(0, ind).trim().toLowerCase(Locale.US);
+				String value = lines[i].substring(ind + 1).trim();
+				if ("transfer-encoding".equals(name) && value.toLowerCase(Locale.US).contains("chunked"))
+					chunked = true;
+				else if ("location".equals(name))
+					location = value;
+			}
+
+			if (httpStatus == 404)
+				throw new IOException("404 Not found");
+			else if (httpStatus == 401)
+				throw new IOException("Not authorized (HTTP response code 401)");
+			else if (httpStatus >= 300 && httpStatus < 400 && location != null) {
+				URL newUrl = new URL(url, location);
+				if (redirects++ >= MAX_REDIRECTS || !"http".equals(newUrl.getProtocol()))
+					throw new IOException("Could not follow redirect to " + location);
+				closeChannel();
+				url = newUrl;
+				connect();
+				return;
+			} else if (httpStatus < 200 || httpStatus >= 300)
+				throw new IOException("HTTP response code " + httpStatus);
+
+			header = null;
+			inBody = true;
+		}
+
+		private void readBody(byte[] b, int off, int len) throws IOException {
+			if (!chunked) {
+				listener.data(b, off, len);
+				return;
+			}
+
+			// chunk states: 0 = size line, 1 = data, 2 = CRLF after data
+			int i = off;
+			int end = off + len;
+			while (i < end) {
+				if (chunkState == 0) {
+					char c = (char) b[i++];
+					if (c == '\n') {
+						String size = chunkSize.toString().trim();
+						int ind = size.indexOf(';');
+						if (ind >= 0)
+							size = size.substring(0, ind);
+						chunkSize.setLength(0);
+						chunkRemaining = Integer.parseInt(size, 16);
+						if (chunkRemaining == 0) {
+							close(null);
+							return;
+						}
+						chunkState = 1;
+					} else if (c != '\r')
+						chunkSize.append(c);
+				} else if (chunkState == 1) {
+					int n = Math.min(chunkRemaining, end - i);
+					listener.data(b, i, n);
+					i += n;
+					chunkRemaining -= n;
+					if (chunkRemaining == 0)
+						chunkState = 2;
+				} else {
+					if (b[i++] == '\n')
+						chunkState = 0;
+				}
+			}
+		}
+
+		protected void close(String error) {
+			closeChannel();
+			if (terminated)
+				return;
+
+			long delay = -1;
+			try {
+				delay = listener.closed(error);
+			} catch (Throwable t) {
+				Trace.trace(Trace.ERROR, "Error closing video connection", t);
+			}
+
+			if (delay < 0 || terminated) {
+				thread.remove(this);
+				return;
+			}
+			url = originalUrl;
+			redirects = 0;
+			reconnectTime = System.currentTimeMillis() + delay;
+		}
+
+		private void closeChannel() {
+			if (channel == null)
+				return;
+
+			try {
+				channel.close();
+			} catch (Exception e) {
+				// ignore
+			}
+			channel = null;
+		}
+	}
+
+	protected class SelectorThread extends Thread {
+		protected final Selector selector;
+		protected final List<Connection> connections = new ArrayList<>();
+		private final AtomicInteger count = new AtomicInteger();
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private volatile boolean done;
+
+		protected SelectorThread(int num) throws IOException {
+			super("CDS Video Reader " + num);
+			setDaemon(true);
+			selector = Selector.open();
+		}
+
+		protected void execute(Runnable r) {
+			tasks.add(r);
+			selector.wakeup();
+		}
+
+		protected int getNumConnections() {
+			return count.get();
+		}
+
+		protected void remove(Connection c) {
+			if (connections.remove(c))
+				count.decrementAndGet();
+		}
+
+		@Override
+		public void run() {
+			ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+			while (!done) {
+				try {
+					selector.select(500);
+				} catch (IOException e) {
+					Trace.trace(Trace.ERROR, "Video selector error", e);
+				}
+
+				Runnable r = tasks.poll();
+				while (r != null) {
+					try {
+						r.run();
+					} catch (Throwable t) {
+						Trace.trace(Trace.ERROR, "Video selector error", t);
+					}
+					r = tasks.poll();
+				}
+
+				Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+				while (iter.hasNext()) {
+					SelectionKey key = iter.next();
+					iter.remove();
+					Connection c = (Connection) key.attachment();
+					try {
+						if (!key.isValid())
+							continue;
+						if (key.isConnectable())
+							c.finishConnect();
+						else if (key.isWritable())
+							c.write();
+						else if (key.isReadable())
+							c.read(buf);
+					} catch (Throwable t) {
+						c.close(t.getMessage() == null ? t.toString() : t.getMessage());
+					}
+				}
+
+				// check timeouts and pending reconnects
+				long now = System.currentTimeMillis();
+				for (Connection c : connections.toArray(new Connection[0])) {
+					if (c.channel != null) {
+						if (now > c.timeout)
+							c.close(c.inBody ? "Read timed out" : "Connect timed out");
+					} else if (c.reconnectTime >= 0 && now >= c.reconnectTime) {
+						try {
+							c.connect();
+						} catch (Throwable t) {
+							c.close(t.getMessage());
+						}
+					}
+				}
+			}
+
+			for (Connection c : connections)
+				c.closeChannel();
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+
+		protected void shutdown() {
+			done = true;
+			selector.wakeup();
+		}
+	}
+
+	private final SelectorThread[] threads;
+
+	// resolves host names, which blocks, so that it doesn't hold up the selector threads
+	private final ExecutorService resolver = Executors.newFixedThreadPool(RESOLVER_THREADS, r -> {
+		Thread t = new Thread(r, "CDS Video Resolver");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public NIOStreamReader(int numThreads) {
+		threads = new SelectorThread[numThreads];
+		try {
+			for (int i = 0; i < numThreads; i++) {
+				threads[i] = new SelectorThread(i);
+				threads[i].start();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not open selector", e);
+		}
+	}
+
+	/**
+	 * Returns true if the given stream can be read by this reader.
+	 *
+	 * @param url a stream url
+	 * @return true if it can be read, and false otherwise
+	 */
+	public static boolean canRead(URL url) {
+		return "http".equals(url.getProtocol());
+	}
+
+	/**
+	 * Open a connection to the given stream on the least loaded thread.
+	 *
+	 * @param url the stream url
+	 * @param listener a listener for the stream data
+	 * @return the connection
+	 */
+	public Connection open(URL url, IConnectionListener listener) {
+		SelectorThread thread = threads[0];
+		for (SelectorThread t : threads) {
+			if (t.getNumConnections() < thread.getNumConnections())
+				thread = t;
+		}
+
+		Connection c = new Connection(url, listener, thread);
+		SelectorThread t2 = thread;
+		thread.count.incrementAndGet();
+		thread.execute(() -> {
+			if (c.terminated) {
+				t2.count.decrementAndGet();
+				return;
+			}
+			t2.connections.add(c);
+			try {
+				c.connect();
+			} catch (Throwable t) {
+				c.close(t.getMessage());
+			}
+		});
+		return c;
+	}
+
+	public void shutdown() {
+		resolver.shutdown();
+		for (SelectorThread t : threads)
+			t.shutdown();
+	}
+}
@@ -10,6 +10,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +49,13 @@ public class ReactionVideoRecorder {
 
 	private Map<String, Info> submissions = new HashMap<>(100);
 
+	// the single thread that writes all reaction files, so that disk I/O doesn't hold up the streams
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "CDS Reaction Recorder");
+		t.setDaemon(true);
+		return t;
+	});
+
 	private ReactionVideoRecorder() {
 		// do nothing
 	}
@@ -155,7 +164,20 @@ public class ReactionVideoRecorder {
 				return;
 			}
 
-			info.listener = new VideoStreamListener(info.out, true);
+			// the listener writes on the writer thread, and doesn't close the file itself so that
+			// it is only closed after the last write
+			OutputStream out = info.out;
+			info.listener = new VideoStreamListener(null, true, writer) {
+				@Override
+				protected void writeOutput(Chunk c) throws IOException {
+					out.write(c.b);
+				}
+
+				@Override
+				protected void flushOutput() throws IOException {
+					out.flush();
+				}
+			};
 			try {
 				info.stream = map.getVideoStream(teamId);
 			} catch (Exception e) {
@@ -203,20 +225,24 @@ public class ReactionVideoRecorder {
 					Trace.trace(Trace.INFO, "Reaction recording done: " + aggregator.getStreamName(info.stream));
 					aggregator.removeStreamListener(info.stream, info.listener);
 
-					try {
-						info.out.close();
-					} catch (Exception e) {
-						// ignore
-					}
+					// close on the writer, after any writes that are already queued
+					OutputStream out = info.out;
 					info.out = null;
+					writer.execute(() -> {
+						try {
+							out.close();
+						} catch (Exception e) {
+							// ignore
+						}
 
-					if (info.tempFile.exists())
-						info.tempFile.delete();
+						if (info.tempFile.exists())
+							info.tempFile.delete();
 
-					if (info.file.exists() && info.file.length() == 0) {
-						Trace.trace(Trace.WARNING, "No video received for submission. Stream: " + info.stream);
-						info.file.delete();
-					}
+						if (info.file.exists() && info.file.length() == 0) {
+							Trace.trace(Trace.WARNING, "No video received for submission. Stream: " + info.stream);
+							info.file.delete();
+						}
+					});
 				}
 			}
 		}, time, TimeUnit.SECONDS);
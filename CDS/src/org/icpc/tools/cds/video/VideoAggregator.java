@@ -2,7 +2,7 @@ package org.icpc.tools.cds.video;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -19,7 +19,7 @@ public class VideoAggregator {
 		LAZY, EAGER, LAZY_CLOSE
 	}
 
-	public static final int MAX_STREAMS = 300;
+	public static final int MAX_STREAMS = 1000;
 	public static final int MAX_CHANNELS = 20;
 
 	public static class Stats {
@@ -27,6 +27,9 @@ public class VideoAggregator {
 		protected int maxConcurrentListeners;
 		protected int totalListeners;
 		protected long totalTime;
+		protected int drops;
+		protected long droppedBytes;
+		protected long maxLag;
 
 		public void newListener() {
 			concurrentListeners++;
@@ -46,11 +49,30 @@ public class VideoAggregator {
 			long startTime = listener.getStartTime();
 			totalTime += System.currentTimeMillis() - startTime;
 			concurrentListeners--;
+			long lag = listener.getMaxLag();
+			if (lag > maxLag)
+				maxLag = lag;
 
 			if (this != stats) {
 				stats.dropListener(listener);
 			}
 		}
+
+		/**
+		 * Record that data was dropped because a listener fell too far behind.
+		 *
+		 * @param bytes the number of bytes dropped
+		 * @param newDrop true if the listener just fell behind, or false if it was already skipping
+		 *           to the next keyframe
+		 */
+		public void dropped(int bytes, boolean newDrop) {
+			if (newDrop)
+				drops++;
+			droppedBytes += bytes;
+
+			if (this != stats)
+				stats.dropped(bytes, newDrop);
+		}
 	}
 
 	protected static Stats stats = new Stats();
@@ -68,16 +90,20 @@ public class VideoAggregator {
 
 	private List<VideoStream> videoStream = new ArrayList<>();
 
+	// threads for blocking stream readers (https, files, FLV) and other tasks, only created as needed
 	protected ThreadPoolExecutor executor = null;
 
+	// shared selector threads that read plain http streams
+	protected NIOStreamReader reader = null;
+
 	public VideoAggregator() {
 		super();
 
 		for (int i = 0; i < MAX_CHANNELS; i++)
 			channels[i] = new Channel();
 
-		executor = new ThreadPoolExecutor(MAX_STREAMS + 2, MAX_STREAMS + 2, 15L, TimeUnit.SECONDS,
-				new ArrayBlockingQueue<Runnable>(MAX_STREAMS + 2), new ThreadFactory() {
+		executor = new ThreadPoolExecutor(2, MAX_STREAMS + 2, 15L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
 					@Override
 					public Thread newThread(Runnable r) {
 						Thread t = new Thread(r, "CDS Video Worker");
@@ -86,6 +112,8 @@ public class VideoAggregator {
 						return t;
 					}
 				});
+
+		reader = new NIOStreamReader(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
 	}
 
 	public static boolean isRunning() {
@@ -116,6 +144,9 @@ public class VideoAggregator {
 
 		Trace.trace(Trace.INFO, "Video reservation for " + name + " at " + url + " on stream " + numReserved);
 
+		if (this == instance)
+			VideoRecorder.getInstance().record(info);
+
 		return numReserved;
 	}
 
@@ -254,7 +285,11 @@ public class VideoAggregator {
 			}
 		}
 
-		videoStream.get(stream).reset();
+		VideoStream vs = videoStream.get(stream);
+		vs.reset();
+
+		if (this == instance)
+			VideoRecorder.getInstance().record(vs);
 	}
 
 	public int getConcurrent() {
@@ -273,6 +308,14 @@ public class VideoAggregator {
 		return stats.totalTime;
 	}
 
+	public int getDrops() {
+		return stats.drops;
+	}
+
+	public long getDroppedBytes() {
+		return stats.droppedBytes;
+	}
+
 	public void dropUntrustedListeners() {
 		Trace.trace(Trace.INFO, "Contest freeze! Cutting off unauthorized video feeds");
 		if (!executor.isShutdown())
@@ -301,5 +344,6 @@ public class VideoAggregator {
 		});
 
 		executor.shutdownNow();
+		reader.shutdown();
 	}
 }
\ No newline at end of file
@@ -12,13 +12,37 @@ public abstract class VideoHandler {
 
 		void flush();
 
+		/**
+		 * Mark the start of a keyframe: the next data written is a point where a listener that has
+		 * fallen behind can safely resume.
+		 */
+		void keyframe();
+
 		boolean isDone();
 	}
 
+	/**
+	 * A parser that data read from a stream is pushed to, for readers that don't use an
+	 * InputStream.
+	 */
+	public interface IStreamParser {
+		void parse(byte[] b, int off, int len) throws IOException;
+	}
+
 	protected abstract String getFormat();
 
 	/**
-	 * Write header/cached information for the given stream.
+	 * Write the container header, once at the start of each output.
+	 *
+	 * @throws IOException
+	 */
+	protected void writeFileHeader(OutputStream out) throws IOException {
+		// ignore
+	}
+
+	/**
+	 * Write header/cached information for the given stream, i.e. anything a new listener needs
+	 * before the latest keyframe (e.g. MPEG-TS program tables or FLV metadata).
 	 *
 	 * @throws IOException
 	 */
@@ -30,5 +54,15 @@ public abstract class VideoHandler {
 		// ignore
 	}
 
+	/**
+	 * Create a parser that data can be pushed to, or return null if this format can only be read
+	 * from an InputStream.
+	 *
+	 * @return a parser, or null
+	 */
+	protected IStreamParser createParser(Object stream, IStreamListener listener) {
+		return null;
+	}
+
 	protected abstract void createReader(InputStream in, Object stream, IStreamListener listener) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,402 @@
+package org.icpc.tools.cds.video;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.icpc.tools.cds.video.VideoStreamListener.Chunk;
+import org.icpc.tools.contest.Trace;
+
+/**
+ * Records video streams to disk as a rolling series of short MPEG-TS segments, so that any part
+ * of any stream can be served later by time range.
+ *
+ * Segments are cut at keyframes and each one starts with the stream header, so every segment can
+ * be played on its own. Segment file names are their start time, and the keyframes in each
+ * segment are indexed in memory, so serving a time range only reads the data in that range. When
+ * the recordings go over the disk budget, the oldest segments (from any stream) are deleted first.
+ *
+ * Each recording queues data in the same bounded buffer as any other listener, and all disk I/O
+ * (writing, opening and closing segments, and deleting old ones) is done on a single recorder
+ * thread, so a slow disk makes recordings skip ahead instead of holding up the stream readers.
+ */
+public class VideoRecorder {
+	private static final String EXTENSION = ".ts";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static VideoRecorder instance = new VideoRecorder();
+
+	protected static class Segment {
+		protected final File file;
+		protected final long start;
+		protected long end;
+		protected long size;
+
+		// pairs of (time, file offset) for each keyframe, empty for segments from a previous run
+		protected final List<long[]> keyframes = new ArrayList<>();
+
+		protected Segment(File file, long start) {
+			this.file = file;
+			this.start = start;
+			this.end = start;
+		}
+	}
+
+	/**
+	 * A listener that records one stream. Chunks are written on the recorder thread.
+	 */
+	private class Recording extends VideoStreamListener {
+		private final VideoStream stream;
+		private final File dir;
+		private final NavigableMap<Long, Segment> index;
+		private Segment current;
+		private OutputStream out;
+
+		protected Recording(VideoStream stream, File dir, NavigableMap<Long, Segment> index) {
+			super(null, true, executor);
+			this.stream = stream;
+			this.dir = dir;
+			this.index = index;
+		}
+
+		@Override
+		protected void writeOutput(Chunk c) throws IOException {
+			long time = c.time;
+			if (current == null || (c.keyframe && time - current.start >= segmentLength)
+					|| time - current.start >= segmentLength * 4) {
+				startSegment(time);
+			}
+
+			out.write(c.b);
+			synchronized (VideoRecorder.this) {
+				if (c.keyframe)
+					current.keyframes.add(new long[] { time, current.size });
+				current.size += c.b.length;
+				current.end = time;
+			}
+		}
+
+		@Override
+		protected void flushOutput() throws IOException {
+			// flush so that recent data can be served
+			if (out != null)
+				out.flush();
+		}
+
+		private void startSegment(long time) throws IOException {
+			endSegment();
+
+			if (!dir.exists())
+				dir.mkdirs();
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			stream.writeHeader(header);
+
+			Segment s = new Segment(new File(dir, time + EXTENSION), time);
+			out = new BufferedOutputStream(new FileOutputStream(s.file), BUFFER_SIZE);
+			header.writeTo(out);
+			synchronized (VideoRecorder.this) {
+				s.size = header.size();
+				index.put(time, s);
+				current = s;
+			}
+		}
+
+		private void endSegment() {
+			if (current == null)
+				return;
+
+			try {
+				out.close();
+			} catch (Exception e) {
+				// ignore
+			}
+			out = null;
+			segmentClosed(current);
+			current = null;
+		}
+
+		@Override
+		public void close() {
+			super.close();
+			synchronized (VideoRecorder.this) {
+				recordings.remove(stream);
+			}
+
+			// after any write that is already queued
+			executor.execute(() -> endSegment());
+		}
+	}
+
+	// the single thread that does all disk I/O for recordings
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "CDS Video Recorder");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private File folder;
+	private long maxSize;
+	private long segmentLength;
+
+	// all closed segments, oldest first
+	private final Deque<Segment> segments = new ArrayDeque<>();
+	private long size;
+
+	// segment index by stream name
+	private final Map<String, NavigableMap<Long, Segment>> indexes = new HashMap<>();
+	private final Map<VideoStream, Recording> recordings = new IdentityHashMap<>();
+
+	public static VideoRecorder getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Configure recording. The folder can only be set once; the limits can be changed.
+	 *
+	 * @param folder2 the folder to store recordings in
+	 * @param maxSize2 the maximum total size of recordings, in bytes
+	 * @param segmentLength2 the length of each segment, in ms
+	 */
+	public void configure(File folder2, long maxSize2, long segmentLength2) {
+		synchronized (this) {
+			maxSize = maxSize2;
+			segmentLength = segmentLength2;
+			if (folder != null)
+				return;
+
+			folder = folder2;
+			folder.mkdirs();
+			loadSegments();
+			Trace.trace(Trace.INFO, "Recording video to " + folder + " (" + segments.size() + " existing segments, "
+					+ (size / 1024 / 1024) + "MB)");
+		}
+
+		executor.execute(() -> evict());
+
+		for (VideoStream vs : VideoAggregator.getInstance().getVideoInfo())
+			record(vs);
+	}
+
+	public synchronized boolean isRecording() {
+		return folder != null;
+	}
+
+	/**
+	 * Rebuild the index from the segments recorded in a previous run.
+	 */
+	private void loadSegments() {
+		List<Segment> list = new ArrayList<>();
+		File[] dirs = folder.listFiles();
+		if (dirs == null)
+			return;
+
+		for (File dir : dirs) {
+			File[] files = dir.listFiles();
+			if (files == null)
+				continue;
+
+			NavigableMap<Long, Segment> index = getIndex(dir.getName());
+			for (File f : files) {
+				String name = f.getName();
+				if (!name.endsWith(EXTENSION))
+					continue;
+				try {
+					long start = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+					Segment s = new Segment(f, start);
+					s.end = f.lastModified();
+					s.size = f.length();
+					index.put(start, s);
+					list.add(s);
+				} catch (NumberFormatException e) {
+					// not a segment
+				}
+			}
+		}
+
+		Collections.sort(list, (s1, s2) -> Long.compare(s1.start, s2.start));
+		for (Segment s : list) {
+			segments.add(s);
+			size += s.size;
+		}
+	}
+
+	private NavigableMap<Long, Segment> getIndex(String name) {
+		NavigableMap<Long, Segment> index = indexes.get(name);
+		if (index == null) {
+			index = new TreeMap<>();
+			indexes.put(name, index);
+		}
+		return index;
+	}
+
+	private static String getFolderName(VideoStream stream) {
+		return stream.getName().replaceAll("[^A-Za-z0-9_\\-]", "_");
+	}
+
+	/**
+	 * Start recording the given stream, if recording is enabled and it isn't already recorded.
+	 * Recorded streams stay connected, even in lazy mode.
+	 *
+	 * @param stream a video stream
+	 */
+	public void record(VideoStream stream) {
+		Recording r = null;
+		synchronized (this) {
+			if (folder == null || recordings.containsKey(stream))
+				return;
+
+			String name = getFolderName(stream);
+			r = new Recording(stream, new File(folder, name), getIndex(name));
+			recordings.put(stream, r);
+		}
+		stream.addListener(r);
+	}
+
+	private void segmentClosed(Segment s) {
+		synchronized (this) {
+			segments.add(s);
+			size += s.size;
+		}
+		evict();
+	}
+
+	/**
+	 * Delete the oldest segments until the recordings are within the disk budget. Segments are
+	 * removed from the index first, and the files deleted without holding the lock.
+	 */
+	private void evict() {
+		List<File> files = new ArrayList<>();
+		synchronized (this) {
+			while (size > maxSize && !segments.isEmpty()) {
+				Segment s = segments.poll();
+				size -= s.size;
+				NavigableMap<Long, Segment> index = indexes.get(s.file.getParentFile().getName());
+				if (index != null)
+					index.remove(s.start);
+				files.add(s.file);
+			}
+		}
+
+		for (File f : files) {
+			if (!f.delete())
+				Trace.trace(Trace.WARNING, "Could not delete video segment " + f);
+		}
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the recorded time ranges of the given stream, as (start, end, size) triples, oldest
+	 * first.
+	 *
+	 * @param stream a video stream
+	 * @return the recorded segments
+	 */
+	public synchronized List<long[]> getSegments(VideoStream stream) {
+		List<long[]> list = new ArrayList<>();
+		NavigableMap<Long, Segment> index = indexes.get(getFolderName(stream));
+		if (index == null)
+			return list;
+
+		for (Segment s : index.values())
+			list.add(new long[] { s.start, s.end, s.size });
+		return list;
+	}
+
+	/**
+	 * Write the recording of the given stream between two times. The output starts at the last
+	 * keyframe before the start time (or the start of that segment), and ends at the first
+	 * keyframe after the end time (or the end of that segment).
+	 *
+	 * @param stream a video stream
+	 * @param start the start time, in ms since the epoch
+	 * @param end the end time, in ms since the epoch
+	 * @param out the stream to write to
+	 * @return false if nothing was recorded in that range
+	 * @throws IOException
+	 */
+	public boolean writeRecording(VideoStream stream, long start, long end, OutputStream out) throws IOException {
+		if (end < start)
+			return false;
+
+		// take a snapshot of the (file, from, to) ranges to send
+		List<Object[]> ranges = new ArrayList<>();
+		synchronized (this) {
+			NavigableMap<Long, Segment> index = indexes.get(getFolderName(stream));
+			if (index == null)
+				return false;
+
+			Long first = index.floorKey(start);
+			if (first == null)
+				first = start;
+
+			for (Segment s : index.subMap(first, true, end, true).values()) {
+				if (s.end < start)
+					continue;
+
+				long from = 0;
+				long to = s.size;
+				for (long[] kf : s.keyframes) {
+					if (kf[0] <= start)
+						from = kf[1];
+					else if (kf[0] > end) {
+						to = kf[1];
+						break;
+					}
+				}
+				ranges.add(new Object[] { s.file, from, to });
+			}
+		}
+
+		if (ranges.isEmpty())
+			return false;
+
+		WritableByteChannel wbc = Channels.newChannel(out);
+		boolean first = true;
+		for (Object[] r : ranges) {
+			long from = (Long) r[1];
+			long to = (Long) r[2];
+			if (first && from > 0)
+				stream.writeHeader(out);
+			first = false;
+
+			try (FileInputStream in = new FileInputStream((File) r[0])) {
+				FileChannel fc = in.getChannel();
+				long pos = from;
+				while (pos < to) {
+					long n = fc.transferTo(pos, to - pos, wbc);
+					if (n <= 0)
+						break;
+					pos += n;
+				}
+			} catch (IOException e) {
+				// segment may have been evicted while sending
+				Trace.trace(Trace.WARNING, "Could not send video segment " + r[0] + ": " + e.getMessage());
+			}
+		}
+		return true;
+	}
+}
@@ -31,11 +31,14 @@ import org.icpc.tools.contest.model.FloorMap;
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IState;
 import org.icpc.tools.contest.model.feed.JSONEncoder;
+import org.icpc.tools.contest.model.feed.Timestamp;
 
 // video/x?resetAll=true - reset all streams
 // video/x?mode=y - set connection mode to y for all teams
 // video/x/<teamId> - stream video for the given team id
 // video/x/<teamId>?reset - reset video for the given team id
+// video/x/<teamId>?recording - list the recorded time ranges for the given team id
+// video/x/<teamId>?start=t1&end=t2 - stream recorded video between two times
 // video/x - list stream status
 // video - list status of all streams
 // where x = desktop or webcam
@@ -46,6 +49,9 @@ public class VideoServlet extends HttpServlet {
 	private static final String RESET_ALL = "resetAll";
 	private static final String RESET = "reset";
 	private static final String MODE = "mode";
+	private static final String RECORDING = "recording";
+	private static final String START = "start";
+	private static final String END = "end";
 
 	private static final Dimension SIZE = new Dimension(800, 600);
 
@@ -161,6 +167,15 @@ public class VideoServlet extends HttpServlet {
 			return;
 		}
 
+		if (request.getParameter(RECORDING) != null || request.getParameter(START) != null) {
+			if (!trusted) {
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+				return;
+			}
+			doRecording(request, response, filename, stream);
+			return;
+		}
+
 		// block https connections
 		if (request.isSecure() && !Role.isAdmin(request)) {
 			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Use the Contest API. Incorrect URL, should be http");
@@ -202,18 +217,15 @@ public class VideoServlet extends HttpServlet {
 		response.setHeader("Cache-Control", "no-cache");
 		response.setContentType("application/octet");
 
-		OutputStream out = response.getOutputStream();
-		va.handler.writeHeader(out, stream);
-		final VideoStreamListener listener = new VideoStreamListener(out, trusted);
-
 		String format = va.handler.getFormat();
 		response.setHeader("Content-Disposition", "inline; filename=\"" + filename + "." + format + "\"");
-		if (!channel)
-			va.addStreamListener(stream, listener);
-		else
-			va.addChannelListener(stream, listener);
 
+		OutputStream out = response.getOutputStream();
+		va.handler.writeFileHeader(out);
+
+		// start async first so that the listener can write without blocking
 		final AsyncContext asyncCtx = request.startAsync();
+		final VideoStreamListener listener = new VideoStreamListener(out, trusted);
 		asyncCtx.addListener(new AppAsyncListener() {
 			@Override
 			public void onComplete(AsyncEvent asyncEvent) throws IOException {
@@ -223,9 +235,66 @@ public class VideoServlet extends HttpServlet {
 					va.removeChannelListener(stream, listener);
 			}
 		});
+
+		if (!channel)
+			va.addStreamListener(stream, listener);
+		else
+			va.addChannelListener(stream, listener);
 		asyncCtx.setTimeout(0);
 	}
 
+	private static long parseTime(String s) throws Exception {
+		if (s.matches("\\d+"))
+			return Long.parseLong(s);
+		return Timestamp.parse(s);
+	}
+
+	private static void doRecording(HttpServletRequest request, HttpServletResponse response, String filename,
+			int stream) throws IOException {
+		VideoRecorder recorder = VideoRecorder.getInstance();
+		if (!recorder.isRecording() || stream < 0 || stream >= va.getVideoInfo().size()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		VideoStream vs = va.getVideoInfo().get(stream);
+		if (request.getParameter(RECORDING) != null) {
+			response.setContentType("application/json");
+			JSONEncoder je = new JSONEncoder(response.getWriter());
+			je.open();
+			je.encode("name", vs.getName());
+			je.openChildArray("segments");
+			for (long[] seg : recorder.getSegments(vs)) {
+				je.open();
+				je.encode("start", Timestamp.format(seg[0]));
+				je.encode("end", Timestamp.format(seg[1]));
+				je.encode("size", seg[2]);
+				je.close();
+			}
+			je.closeArray();
+			je.close();
+			return;
+		}
+
+		long start;
+		long end;
+		try {
+			start = parseTime(request.getParameter(START));
+			String endParam = request.getParameter(END);
+			end = endParam == null ? System.currentTimeMillis() : parseTime(endParam);
+		} catch (Exception e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid start or end time");
+			return;
+		}
+
+		response.setContentType("video/MP2T");
+		response.setHeader("Content-Disposition", "inline; filename=\"" + filename + "-" + start + ".ts\"");
+		if (!recorder.writeRecording(vs, start, end, response.getOutputStream()) && !response.isCommitted()) {
+			response.reset();
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Nothing recorded in that time range");
+		}
+	}
+
 	private static void writeStatus(PrintWriter pw) {
 		JSONEncoder je = new JSONEncoder(pw);
 		je.open();
@@ -243,6 +312,20 @@ public class VideoServlet extends HttpServlet {
 			je.encode("max_current", s.maxConcurrentListeners);
 			je.encode("total_listeners", s.totalListeners);
 			je.encode("total_time", ContestUtil.formatTime(s.totalTime));
+			je.encode("drops", s.drops);
+			je.encode("dropped_bytes", s.droppedBytes);
+			je.encode("max_lag", s.maxLag);
+			je.openChildArray("listeners");
+			for (VideoStreamListener l : vi.getListeners()) {
+				je.open();
+				je.encode("lag", l.getLag());
+				je.encode("max_lag", l.getMaxLag());
+				je.encode("queued_bytes", l.getQueuedBytes());
+				je.encode("drops", l.getDrops());
+				je.encode("dropped_bytes", l.getDroppedBytes());
+				je.close();
+			}
+			je.closeArray();
 			je.close();
 		}
 		je.closeArray();
@@ -250,6 +333,10 @@ public class VideoServlet extends HttpServlet {
 		je.encode("max_current", va.getMaxConcurrent());
 		je.encode("total_listeners", va.getTotal());
 		je.encode("total_time", ContestUtil.formatTime(va.getTotalTime()));
+		je.encode("drops", va.getDrops());
+		je.encode("dropped_bytes", va.getDroppedBytes());
+		if (VideoRecorder.getInstance().isRecording())
+			je.encode("recording_size", VideoRecorder.getInstance().getSize());
 		je.close();
 	}
 
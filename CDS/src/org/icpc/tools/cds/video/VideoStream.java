@@ -1,8 +1,10 @@
 package org.icpc.tools.cds.video;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -14,21 +16,25 @@ import java.util.concurrent.ThreadPoolExecutor;
 import org.icpc.tools.cds.video.VideoAggregator.ConnectionMode;
 import org.icpc.tools.cds.video.VideoAggregator.Stats;
 import org.icpc.tools.cds.video.VideoAggregator.Status;
+import org.icpc.tools.cds.video.NIOStreamReader.Connection;
+import org.icpc.tools.cds.video.NIOStreamReader.IConnectionListener;
 import org.icpc.tools.cds.video.VideoHandler.IStreamListener;
+import org.icpc.tools.cds.video.VideoHandler.IStreamParser;
+import org.icpc.tools.cds.video.VideoStreamListener.Chunk;
 import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.feed.HTTPSSecurity;
 
 public class VideoStream {
 	private final ThreadPoolExecutor executor;
 	private final VideoHandler handler;
+	private final NIOStreamReader reader;
 	private final Stats stats = new Stats();
 
-	private interface ReadThread extends Runnable {
-		void terminate();
-	}
+	// at HD webcam rates (~350kB/s) this is ~6s of video
+	private static final int MAX_GOP = 2 * 1024 * 1024;
 
-	private interface StreamOperation {
-		void execute(VideoStreamListener listener) throws IOException;
+	private interface ReadThread {
+		void terminate();
 	}
 
 	private String name;
@@ -39,6 +45,13 @@ public class VideoStream {
 	private ReadThread thread;
 	private List<VideoStreamListener> listeners = new ArrayList<>(3);
 
+	// the data since the last keyframe, replayed to new listeners so they can start playing
+	// immediately instead of waiting for the next keyframe. Only kept while the stream has
+	// listeners (including a recording), so idle eager streams don't hold up to MAX_GOP each.
+	// Guarded by listeners
+	private List<Chunk> gop = new ArrayList<>();
+	private int gopBytes;
+
 	public VideoStream(VideoAggregator videoAggregator, String name, String url) {
 		this(videoAggregator, name, url, 0);
 	}
@@ -46,6 +59,7 @@ public class VideoStream {
 	public VideoStream(VideoAggregator videoAggregator, String name, String url, int order) {
 		this.executor = videoAggregator.executor;
 		this.handler = videoAggregator.handler;
+		this.reader = videoAggregator.reader;
 		this.name = name;
 		this.url = url;
 		this.order = order;
@@ -76,24 +90,118 @@ public class VideoStream {
 	}
 
 	/**
-	 * Execute an action on all listeners.
+	 * Write the header a player needs before the latest keyframe, e.g. the MPEG-TS program tables.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writeHeader(OutputStream out) throws IOException {
+		handler.writeHeader(out, this);
+	}
+
+	private VideoStreamListener[] getListenerArray() {
+		synchronized (listeners) {
+			if (listeners == null || listeners.isEmpty())
+				return null;
+
+			return listeners.toArray(new VideoStreamListener[0]);
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the current listeners.
+	 *
+	 * @return the listeners
+	 */
+	public VideoStreamListener[] getListeners() {
+		VideoStreamListener[] list = getListenerArray();
+		if (list == null)
+			return new VideoStreamListener[0];
+		return list;
+	}
+
+	/**
+	 * Queue data to all listeners. Listeners buffer and write independently, so this never blocks
+	 * on a slow client.
 	 *
-	 * @param num
 	 * @param b
+	 * @param off
+	 * @param len
+	 * @param keyframe true if the data starts with a keyframe
 	 */
-	private void sendToListeners(StreamOperation a) {
+	private void sendToListeners(byte[] b, int off, int len, boolean keyframe) {
+		// copy once, the chunk is shared by all listeners
+		byte[] b2 = new byte[len];
+		System.arraycopy(b, off, b2, 0, len);
+		Chunk c = new Chunk(b2, keyframe);
+
 		VideoStreamListener[] list = null;
 		synchronized (listeners) {
-			List<VideoStreamListener> listenerList = listeners;
-			if (listenerList == null || listenerList.isEmpty())
+			cacheChunk(c);
+			if (listeners.isEmpty())
 				return;
 
-			list = listenerList.toArray(new VideoStreamListener[0]);
+			list = listeners.toArray(new VideoStreamListener[0]);
 		}
 
 		for (VideoStreamListener l : list) {
 			try {
-				a.execute(l);
+				// only the stream writes to listeners, so this tells if the write started a new drop
+				int drops = l.getDrops();
+				int dropped = l.write(c);
+				if (dropped > 0)
+					stats.dropped(dropped, l.getDrops() != drops);
+			} catch (Throwable t) {
+				// could not send. kill this feed
+				removeListener(l);
+			}
+		}
+	}
+
+	/**
+	 * Add a chunk to the GOP cache, starting over at each keyframe.
+	 */
+	private void cacheChunk(Chunk c) {
+		if (listeners.isEmpty()) {
+			if (!gop.isEmpty()) {
+				gop.clear();
+				gopBytes = 0;
+			}
+			return;
+		}
+
+		if (c.keyframe) {
+			gop.clear();
+			gopBytes = 0;
+		} else if (gop.isEmpty())
+			return;
+
+		if (gopBytes + c.b.length > MAX_GOP) {
+			// too long, wait for the next keyframe
+			gop.clear();
+			gopBytes = 0;
+			return;
+		}
+
+		gop.add(c);
+		gopBytes += c.b.length;
+	}
+
+	private void clearGOP() {
+		synchronized (listeners) {
+			gop.clear();
+			gopBytes = 0;
+		}
+	}
+
+	private void flushListeners() {
+		VideoStreamListener[] list = getListenerArray();
+		if (list == null)
+			return;
+
+		for (VideoStreamListener l : list) {
+			try {
+				l.flush();
 			} catch (Throwable t) {
 				// could not send. kill this feed
 				removeListener(l);
@@ -108,6 +216,22 @@ public class VideoStream {
 		boolean isListening = false;
 		synchronized (listeners) {
 			isListening = !listeners.isEmpty();
+
+			// send the stream header and GOP cache before adding the listener, so that nothing is
+			// missed or sent twice
+			try {
+				if (!gop.isEmpty()) {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					handler.writeHeader(out, this);
+					if (out.size() > 0)
+						listener.write(new Chunk(out.toByteArray(), true));
+					for (Chunk c : gop)
+						listener.write(c);
+					listener.flush();
+				}
+			} catch (IOException e) {
+				// listener is already closed, it will be removed on the next write
+			}
 			listeners.add(listener);
 		}
 
@@ -132,6 +256,11 @@ public class VideoStream {
 
 			if (worked)
 				wasLastListener = listeners.isEmpty();
+
+			if (wasLastListener) {
+				gop.clear();
+				gopBytes = 0;
+			}
 		}
 
 		listener.close();
@@ -164,6 +293,8 @@ public class VideoStream {
 			}
 
 			listeners.clear();
+			gop.clear();
+			gopBytes = 0;
 		}
 
 		synchronized (this) {
@@ -228,6 +359,7 @@ public class VideoStream {
 
 	private void startReadThread() {
 		handler.clearCache(this);
+		clearGOP();
 
 		URL url2 = null;
 		try {
@@ -253,131 +385,201 @@ public class VideoStream {
 		if (thread != null)
 			thread.terminate();
 
-		thread = new ReadThread() {
-			protected InputStream in;
-			protected boolean done = false;
-			protected int failures = 0;
+		StreamWriter w = new StreamWriter();
+		IStreamParser parser = null;
+		if (NIOStreamReader.canRead(url3))
+			parser = handler.createParser(this, w);
+
+		if (parser != null)
+			thread = startNIORead(url3, parser, w);
+		else {
+			BlockingReadThread t = new BlockingReadThread(url3, w);
+			thread = t;
+			executor.execute(t);
+		}
+	}
 
+	/**
+	 * Passes data from the video handler to all listeners.
+	 */
+	private class StreamWriter implements IStreamListener {
+		protected volatile boolean done = false;
+		protected int failures = 0;
+		private boolean keyframe;
+
+		@Override
+		public void write(final byte[] b) {
+			write(b, 0, b.length);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			status = Status.ACTIVE;
+			failures = 0;
+			if (!done)
+				sendToListeners(b, off, len, keyframe);
+			keyframe = false;
+		}
+
+		@Override
+		public void flush() {
+			if (!done)
+				flushListeners();
+		}
+
+		@Override
+		public void keyframe() {
+			keyframe = true;
+		}
+
+		@Override
+		public boolean isDone() {
+			return done;
+		}
+
+		protected void failed(String message) {
+			status = Status.FAILED;
+			Trace.trace(Trace.ERROR, "Could not connect to video " + name + ": " + message);
+			failures++;
+		}
+
+		/**
+		 * Clean up after a connection ends.
+		 *
+		 * @return true to reconnect, or false if the stream should stop
+		 */
+		protected boolean ended() {
+			if (done)
+				return false;
+
+			// do a flush (which may clean up disconnected clients)
+			flushListeners();
+
+			if (failures > 4) {
+				// can't connect after many attempts, drop all listeners and give up
+				Trace.trace(Trace.INFO, "Can't connect, removing all listeners: " + name);
+				removeListeners();
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Read the stream on one of the shared selector threads.
+	 */
+	private ReadThread startNIORead(URL url3, IStreamParser parser, StreamWriter w) {
+		final Connection conn = reader.open(url3, new IConnectionListener() {
 			@Override
-			public void run() {
-				while (!done) {
-					long time = System.currentTimeMillis();
-					try {
-						URLConnection conn = HTTPSSecurity.createURLConnection(url3, null, null);
-						conn.setConnectTimeout(15000);
-						conn.setReadTimeout(10000);
-						conn.setRequestProperty("Content-Type", "video/MP2T");
-						if (conn instanceof HttpURLConnection) {
-							HttpURLConnection httpConn = (HttpURLConnection) conn;
-							int httpStatus = httpConn.getResponseCode();
-							if (httpStatus == HttpURLConnection.HTTP_NOT_FOUND)
-								throw new IOException("404 Not found");
-							else if (httpStatus == HttpURLConnection.HTTP_UNAUTHORIZED)
-								throw new IOException("Not authorized (HTTP response code 401)");
-						}
+			public void data(byte[] b, int off, int len) throws IOException {
+				if (!w.done)
+					parser.parse(b, off, len);
+			}
 
-						/*if (status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_MOVED_PERM
-								|| status == HttpURLConnection.HTTP_SEE_OTHER) {
-							conn = createConnection(new URL(conn.getHeaderField("Location")));
-							conn.setReadTimeout(10000);
-							if (localFile.exists())
-								conn.setIfModifiedSince(localTime);
-							status = conn.getResponseCode();
-						}*/
-
-						in = conn.getInputStream();
-
-						handler.createReader(in, this, new IStreamListener() {
-							@Override
-							public void write(final byte[] b) {
-								status = Status.ACTIVE;
-								failures = 0;
-								if (!done)
-									sendToListeners(listener -> listener.write(b));
-							}
-
-							@Override
-							public void write(byte[] b, int off, int len) {
-								status = Status.ACTIVE;
-								failures = 0;
-								if (!done)
-									sendToListeners(listener -> listener.write(b, off, len));
-							}
-
-							@Override
-							public void flush() {
-								if (!done)
-									sendToListeners(listener -> listener.flush());
-							}
-
-							@Override
-							public boolean isDone() {
-								return done;
-							}
-						});
-
-						// end of stream
-					} catch (Exception e) {
-						status = Status.FAILED;
-						Trace.trace(Trace.ERROR, "Could not connect to video " + name + ": " + e.getMessage());
-						failures++;
-					} finally {
-						if (in != null)
-							try {
-								in.close();
-							} catch (Exception e) {
-								// ignore
-							}
-					}
+			@Override
+			public long closed(String error) {
+				if (error != null)
+					w.failed(error);
+
+				if (!w.ended())
+					return -1;
 
-					if (done)
-						return;
+				// wait 3s before trying to reconnect
+				return 3000;
+			}
+		});
+
+		return new ReadThread() {
+			@Override
+			public void terminate() {
+				w.done = true;
+				conn.terminate();
+			}
+		};
+	}
 
-					// do a flush (which may clean up disconnected clients)
-					sendToListeners(listener -> listener.flush());
+	/**
+	 * Read the stream with a blocking connection on its own thread, for streams that aren't plain
+	 * http or formats that can't be pushed to a parser.
+	 */
+	private class BlockingReadThread implements ReadThread, Runnable {
+		private final URL url3;
+		private final StreamWriter w;
+		protected InputStream in;
+
+		protected BlockingReadThread(URL url3, StreamWriter w) {
+			this.url3 = url3;
+			this.w = w;
+		}
 
-					if (failures > 4) {
-						// can't connect after many attempts, drop all listeners and give up
-						Trace.trace(Trace.INFO, "Can't connect, removing all listeners: " + name);
-						removeListeners();
-						return;
+		@Override
+		public void run() {
+			while (!w.done) {
+				long time = System.currentTimeMillis();
+				try {
+					URLConnection conn = HTTPSSecurity.createURLConnection(url3, null, null);
+					conn.setConnectTimeout(15000);
+					conn.setReadTimeout(10000);
+					conn.setRequestProperty("Content-Type", "video/MP2T");
+					if (conn instanceof HttpURLConnection) {
+						HttpURLConnection httpConn = (HttpURLConnection) conn;
+						int httpStatus = httpConn.getResponseCode();
+						if (httpStatus == HttpURLConnection.HTTP_NOT_FOUND)
+							throw new IOException("404 Not found");
+						else if (httpStatus == HttpURLConnection.HTTP_UNAUTHORIZED)
+							throw new IOException("Not authorized (HTTP response code 401)");
 					}
 
-					if ("file".equals(url3.getProtocol())) {
-						// not perfect, but assume that test samples are about a minute long, aim to
-						// send
-						// one every 59s
-						long dt = System.currentTimeMillis() - time;
-						if (dt < 59000)
-							try {
-								Thread.sleep(59000 - dt);
-							} catch (Exception ex) {
-								// ignore
-							}
-						time = System.currentTimeMillis();
-					} else {
-						// wait 3s before trying to reconnect
+					in = conn.getInputStream();
+
+					handler.createReader(in, VideoStream.this, w);
+
+					// end of stream
+				} catch (Exception e) {
+					w.failed(e.getMessage());
+				} finally {
+					if (in != null)
+						try {
+							in.close();
+						} catch (Exception e) {
+							// ignore
+						}
+				}
+
+				if (!w.ended())
+					return;
+
+				if ("file".equals(url3.getProtocol())) {
+					// not perfect, but assume that test samples are about a minute long, aim to
+					// send one every 59s
+					long dt = System.currentTimeMillis() - time;
+					if (dt < 59000)
 						try {
-							Thread.sleep(3000);
+							Thread.sleep(59000 - dt);
 						} catch (Exception ex) {
 							// ignore
 						}
+				} else {
+					// wait 3s before trying to reconnect
+					try {
+						Thread.sleep(3000);
+					} catch (Exception ex) {
+						// ignore
 					}
 				}
 			}
+		}
 
-			@Override
-			public void terminate() {
-				done = true;
-				try {
-					if (in != null)
-						in.close();
-				} catch (Exception e) {
-					// ignore
-				}
+		@Override
+		public void terminate() {
+			w.done = true;
+			try {
+				if (in != null)
+					in.close();
+			} catch (Exception e) {
+				// ignore
 			}
-		};
-		executor.execute(thread);
+		}
 	}
 
 	public void shutdownNow() {
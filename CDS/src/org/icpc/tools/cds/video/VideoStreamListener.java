@@ -2,17 +2,106 @@ package org.icpc.tools.cds.video;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * A listener (viewer or recorder) of a video stream. Data from the stream is queued in a bounded
+ * buffer and written independently of the stream reader, so that one slow listener doesn't hold
+ * up the stream for everyone else.
+ *
+ * If the output is a servlet stream in async mode, writes are non-blocking and the buffer is
+ * drained whenever the container says the client can accept more. Other streams are written on
+ * the given executor if there is one (e.g. files, so that disk I/O doesn't hold up the stream), or
+ * directly by the thread that adds the data.
+ *
+ * When a listener falls more than MAX_BUFFER bytes behind, everything queued is dropped and the
+ * listener skips ahead to the next keyframe.
+ */
 public class VideoStreamListener {
+	// at HD webcam rates (~350kB/s) this is ~10s of video
+	private static final int MAX_BUFFER = 4 * 1024 * 1024;
+
+	// give up waiting for a keyframe after this much, in case the stream doesn't mark them
+	private static final int MAX_SKIP = 2 * MAX_BUFFER;
+
+	/**
+	 * A chunk of video data. Chunks are immutable and shared by all listeners of a stream, so the
+	 * memory used is bounded by the slowest listener, not the number of listeners.
+	 */
+	protected static class Chunk {
+		protected final byte[] b;
+		protected final boolean keyframe;
+		protected final long time;
+
+		protected Chunk(byte[] b, boolean keyframe) {
+			this.b = b;
+			this.keyframe = keyframe;
+			time = System.currentTimeMillis();
+		}
+	}
+
 	private OutputStream out;
+	private ServletOutputStream async;
+	private Executor executor;
 	private long startTime;
 	private boolean trusted;
-	private boolean done;
+	private volatile boolean done;
+
+	private final Deque<Chunk> queue = new ArrayDeque<>();
+	private int queuedBytes;
+	private boolean draining;
+	private boolean scheduled;
+	private boolean flush;
+	private boolean skipping;
+	private int skippedBytes;
+
+	private long lag;
+	private long maxLag;
+	private int drops;
+	private long droppedBytes;
 
 	public VideoStreamListener(OutputStream out, boolean trusted) {
+		this(out, trusted, null);
+	}
+
+	/**
+	 * Create a listener.
+	 *
+	 * @param out the stream to write to
+	 * @param trusted true if the listener is trusted
+	 * @param executor the executor to write on if the stream isn't async, or null to write on the
+	 *           thread that adds the data
+	 */
+	public VideoStreamListener(OutputStream out, boolean trusted, Executor executor) {
 		this.out = out;
+		this.executor = executor;
 		this.trusted = trusted;
 		startTime = System.currentTimeMillis();
+
+		if (out instanceof ServletOutputStream) {
+			ServletOutputStream sout = (ServletOutputStream) out;
+			try {
+				sout.setWriteListener(new WriteListener() {
+					@Override
+					public void onWritePossible() throws IOException {
+						drain();
+					}
+
+					@Override
+					public void onError(Throwable t) {
+						close();
+					}
+				});
+				async = sout;
+			} catch (IllegalStateException e) {
+				// not in async mode, write directly
+			}
+		}
 	}
 
 	public long getStartTime() {
@@ -27,24 +116,194 @@ public class VideoStreamListener {
 		return trusted;
 	}
 
-	public void write(byte[] b) throws IOException {
-		if (done)
-			return;
+	/**
+	 * Returns how far behind this listener is, i.e. the age in ms of the oldest queued data, or the
+	 * data most recently written if nothing is queued.
+	 *
+	 * @return the lag, in ms
+	 */
+	public synchronized long getLag() {
+		Chunk c = queue.peek();
+		if (c != null)
+			return System.currentTimeMillis() - c.time;
+		return lag;
+	}
+
+	public synchronized long getMaxLag() {
+		return maxLag;
+	}
+
+	public synchronized int getQueuedBytes() {
+		return queuedBytes;
+	}
+
+	/**
+	 * Returns the number of times this listener fell too far behind and skipped ahead.
+	 *
+	 * @return the number of drops
+	 */
+	public synchronized int getDrops() {
+		return drops;
+	}
+
+	public synchronized long getDroppedBytes() {
+		return droppedBytes;
+	}
 
-		out.write(b);
+	public void write(byte[] b) throws IOException {
+		write(new Chunk(b, false));
 	}
 
 	public void write(byte[] b, int off, int len) throws IOException {
-		if (done)
-			return;
+		byte[] b2 = new byte[len];
+		System.arraycopy(b, off, b2, 0, len);
+		write(new Chunk(b2, false));
+	}
 
-		out.write(b, off, len);
+	/**
+	 * Queue a chunk of data to be written.
+	 *
+	 * @param c a chunk
+	 * @return the number of bytes dropped
+	 * @throws IOException if the listener is closed
+	 */
+	protected int write(Chunk c) throws IOException {
+		int dropped = 0;
+		synchronized (this) {
+			if (done)
+				throw new IOException("Listener closed");
+
+			int len = c.b.length;
+			if (skipping) {
+				if (c.keyframe || skippedBytes > MAX_SKIP) {
+					skipping = false;
+				} else {
+					skippedBytes += len;
+					droppedBytes += len;
+					return len;
+				}
+			}
+
+			if (queuedBytes + len > MAX_BUFFER) {
+				// too far behind: drop everything that hasn't been written yet and wait for a keyframe
+				dropped = queuedBytes;
+				queue.clear();
+				queuedBytes = 0;
+				drops++;
+				if (!c.keyframe) {
+					skipping = true;
+					skippedBytes = len;
+					dropped += len;
+					droppedBytes += dropped;
+					return dropped;
+				}
+				droppedBytes += dropped;
+			}
+
+			queue.add(c);
+			queuedBytes += len;
+		}
+
+		scheduleDrain();
+		return dropped;
 	}
 
 	public void flush() throws IOException {
-		if (done)
+		synchronized (this) {
+			if (done)
+				throw new IOException("Listener closed");
+
+			flush = true;
+		}
+
+		scheduleDrain();
+	}
+
+	/**
+	 * Drain the queue now, or on the executor if there is one.
+	 */
+	private void scheduleDrain() {
+		if (executor == null || async != null) {
+			drain();
 			return;
+		}
 
+		synchronized (this) {
+			if (draining || scheduled)
+				return;
+			scheduled = true;
+		}
+		executor.execute(() -> drain());
+	}
+
+	/**
+	 * Write as much queued data as the output can accept without blocking.
+	 */
+	private void drain() {
+		synchronized (this) {
+			scheduled = false;
+			if (draining || done)
+				return;
+			draining = true;
+		}
+
+		try {
+			while (true) {
+				Chunk c = null;
+				boolean doFlush = false;
+				synchronized (this) {
+					if (done || (async != null && !async.isReady())) {
+						// the container will call onWritePossible() when the client catches up
+						draining = false;
+						return;
+					}
+
+					c = queue.poll();
+					if (c == null) {
+						if (!flush) {
+							draining = false;
+							return;
+						}
+						flush = false;
+						doFlush = true;
+					} else {
+						queuedBytes -= c.b.length;
+						lag = System.currentTimeMillis() - c.time;
+						if (lag > maxLag)
+							maxLag = lag;
+					}
+				}
+
+				if (doFlush)
+					flushOutput();
+				else
+					writeOutput(c);
+			}
+		} catch (Throwable t) {
+			// could not send, the stream will remove this listener
+			synchronized (this) {
+				draining = false;
+			}
+			close();
+		}
+	}
+
+	/**
+	 * Write one chunk to the output. Only called by one thread at a time.
+	 *
+	 * @param c a chunk
+	 * @throws IOException
+	 */
+	protected void writeOutput(Chunk c) throws IOException {
+		out.write(c.b);
+	}
+
+	/**
+	 * Flush the output. Only called by one thread at a time.
+	 *
+	 * @throws IOException
+	 */
+	protected void flushOutput() throws IOException {
 		out.flush();
 	}
 
@@ -54,14 +313,20 @@ public class VideoStreamListener {
 	 * @return
 	 */
 	public void close() {
-		if (done)
-			return;
+		synchronized (this) {
+			if (done)
+				return;
+
+			done = true;
+			queue.clear();
+			queuedBytes = 0;
+		}
 
 		try {
-			out.close();
+			if (out != null)
+				out.close();
 		} catch (Exception e) {
 			// ignore
 		}
-		done = true;
 	}
-}
\ No newline at end of file
+}
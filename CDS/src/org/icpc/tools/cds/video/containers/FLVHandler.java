@@ -5,13 +5,13 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.icpc.tools.cds.video.VideoHandler;
 
 public class FLVHandler extends VideoHandler {
-	private Map<Object, FLVReader> readers = new HashMap<>();
+	private Map<Object, FLVReader> readers = new ConcurrentHashMap<>();
 
 	@Override
 	protected String getFormat() {
@@ -19,9 +19,12 @@ public class FLVHandler extends VideoHandler {
 	}
 
 	@Override
-	protected void writeHeader(OutputStream out, Object stream) throws IOException {
+	protected void writeFileHeader(OutputStream out) throws IOException {
 		FLVWriter.writeHeader(new DataOutputStream(out));
+	}
 
+	@Override
+	protected void writeHeader(OutputStream out, Object stream) throws IOException {
 		FLVReader r = readers.get(stream);
 		if (r != null)
 			r.sendCache(out);
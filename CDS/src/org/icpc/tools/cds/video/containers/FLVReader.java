@@ -13,8 +13,8 @@ import java.util.Map.Entry;
 import org.icpc.tools.cds.video.VideoHandler.IStreamListener;
 
 public class FLVReader {
-	private byte[] metadata = null;
-	private byte[] mpegData = null;
+	private volatile byte[] metadata = null;
+	private volatile byte[] mpegData = null;
 
 	public void read(DataInputStream din, IStreamListener listener) throws IOException {
 		// read FLV
@@ -81,6 +81,9 @@ public class FLVReader {
 				// System.out.println("Skipped: " + skip);
 			}
 			if (packetType != 8) {
+				// video frame type 1 = keyframe
+				if (packetType == 9 && p.payload.length > 0 && ((p.payload[0] >> 4) & 0x0F) == 1)
+					listener.keyframe();
 				listener.write(p.payload);
 			}
 			if (p.type == 18)
@@ -93,8 +96,12 @@ public class FLVReader {
 	}
 
 	protected void sendCache(OutputStream out) throws IOException {
-		out.write(metadata);
-		out.write(mpegData);
+		byte[] b = metadata;
+		if (b != null)
+			out.write(b);
+		b = mpegData;
+		if (b != null)
+			out.write(b);
 	}
 
 	@SuppressWarnings("unchecked")
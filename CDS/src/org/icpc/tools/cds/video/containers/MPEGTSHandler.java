@@ -2,6 +2,9 @@ package org.icpc.tools.cds.video.containers;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.icpc.tools.cds.video.VideoHandler;
 
@@ -13,44 +16,208 @@ import org.icpc.tools.cds.video.VideoHandler;
 public class MPEGTSHandler extends VideoHandler {
 	private static final int PACKET_LEN = 188;
 
+	/**
+	 * Splits incoming data into whole packets, keeping any partial packet until the rest of it
+	 * arrives. Also tracks the latest program tables (PAT/PMT) and which PID is video, so that
+	 * only video keyframes are marked.
+	 */
+	private static class MPEGTSParser implements IStreamParser {
+		private final IStreamListener listener;
+		private final byte[] partial = new byte[PACKET_LEN];
+		private int partialLen;
+
+		private int pmtPid = -1;
+		private int videoPid = -1;
+		private volatile byte[] pat;
+		private volatile byte[] pmt;
+
+		protected MPEGTSParser(IStreamListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void parse(byte[] b, int off, int len) {
+			int offset = off;
+			int remaining = len;
+			if (partialLen > 0) {
+				int n = Math.min(PACKET_LEN - partialLen, remaining);
+				System.arraycopy(b, offset, partial, partialLen, n);
+				partialLen += n;
+				offset += n;
+				remaining -= n;
+				if (partialLen < PACKET_LEN)
+					return;
+
+				writePackets(partial, 0, 1);
+				partialLen = 0;
+			}
+
+			int numPackets = remaining / PACKET_LEN;
+			if (numPackets > 0) {
+				writePackets(b, offset, numPackets);
+				offset += PACKET_LEN * numPackets;
+				remaining -= PACKET_LEN * numPackets;
+			}
+
+			if (remaining > 0) {
+				System.arraycopy(b, offset, partial, 0, remaining);
+				partialLen = remaining;
+			}
+			listener.flush();
+		}
+
+		/**
+		 * Write whole packets to the listener, split at each video keyframe so that listeners can
+		 * resume there.
+		 */
+		private void writePackets(byte[] b, int offset, int numPackets) {
+			int start = offset;
+			for (int i = 0; i < numPackets; i++) {
+				int p = offset + i * PACKET_LEN;
+				int pid = ((b[p + 1] & 0x1F) << 8) | (b[p + 2] & 0xFF);
+				if (pid == 0)
+					readPAT(b, p);
+				else if (pid == pmtPid)
+					readPMT(b, p);
+				else if ((videoPid == -1 || pid == videoPid) && isKeyframe(b, p)) {
+					if (p > start)
+						listener.write(b, start, p - start);
+					listener.keyframe();
+					start = p;
+				}
+			}
+			listener.write(b, start, offset + PACKET_LEN * numPackets - start);
+		}
+
+		/**
+		 * Returns the offset of the table section in the given packet, or -1 if it doesn't start
+		 * one.
+		 */
+		private static int getSection(byte[] b, int p) {
+			// payload unit start indicator
+			if ((b[p + 1] & 0x40) == 0)
+				return -1;
+
+			int i = p + 4;
+			int afc = (b[p + 3] >> 4) & 0x03;
+			if (afc == 2)
+				return -1;
+			if (afc == 3)
+				i += 1 + (b[i] & 0xFF);
+
+			// skip the pointer field
+			i += 1 + (b[i] & 0xFF);
+			if (i + 8 > p + PACKET_LEN)
+				return -1;
+			return i;
+		}
+
+		private void readPAT(byte[] b, int p) {
+			int i = getSection(b, p);
+			if (i < 0 || b[i] != 0)
+				return;
+
+			// first program after the 8 byte header that isn't the network PID (program 0)
+			int end = Math.min(i + 3 + (((b[i + 1] & 0x0F) << 8) | (b[i + 2] & 0xFF)) - 4, p + PACKET_LEN - 4);
+			for (int j = i + 8; j <= end - 4; j += 4) {
+				int program = ((b[j] & 0xFF) << 8) | (b[j + 1] & 0xFF);
+				if (program != 0) {
+					pmtPid = ((b[j + 2] & 0x1F) << 8) | (b[j + 3] & 0xFF);
+					break;
+				}
+			}
+			pat = copyPacket(b, p);
+		}
+
+		private void readPMT(byte[] b, int p) {
+			int i = getSection(b, p);
+			if (i < 0 || b[i] != 2 || i + 12 > p + PACKET_LEN)
+				return;
+
+			int end = Math.min(i + 3 + (((b[i + 1] & 0x0F) << 8) | (b[i + 2] & 0xFF)) - 4, p + PACKET_LEN);
+			int j = i + 12 + (((b[i + 10] & 0x0F) << 8) | (b[i + 11] & 0xFF));
+			while (j + 5 <= end) {
+				int streamType = b[j] & 0xFF;
+				if (isVideo(streamType)) {
+					videoPid = ((b[j + 1] & 0x1F) << 8) | (b[j + 2] & 0xFF);
+					break;
+				}
+				j += 5 + (((b[j + 3] & 0x0F) << 8) | (b[j + 4] & 0xFF));
+			}
+			pmt = copyPacket(b, p);
+		}
+
+		private static boolean isVideo(int streamType) {
+			// MPEG-1/2, MPEG-4 part 2, H.264, H.265
+			return streamType == 0x01 || streamType == 0x02 || streamType == 0x10 || streamType == 0x1B
+					|| streamType == 0x24;
+		}
+
+		private static byte[] copyPacket(byte[] b, int p) {
+			byte[] packet = new byte[PACKET_LEN];
+			System.arraycopy(b, p, packet, 0, PACKET_LEN);
+			return packet;
+		}
+
+		protected void writeHeader(OutputStream out) throws IOException {
+			byte[] b = pat;
+			if (b != null)
+				out.write(b);
+			b = pmt;
+			if (b != null)
+				out.write(b);
+		}
+	}
+
+	// the current parser for each stream
+	private Map<Object, MPEGTSParser> parsers = new ConcurrentHashMap<>();
+
 	@Override
 	protected String getFormat() {
 		return "m2ts";
 	}
 
+	/**
+	 * Returns true if the packet at the given offset has the random access indicator set in its
+	 * adaptation field, i.e. it starts a keyframe.
+	 */
+	protected static boolean isKeyframe(byte[] b, int off) {
+		// adaptation field control (2 or 3 = adaptation field present), then its length and flags
+		if ((b[off + 3] & 0x20) == 0 || (b[off + 4] & 0xFF) == 0)
+			return false;
+		return (b[off + 5] & 0x40) != 0;
+	}
+
+	@Override
+	protected void writeHeader(OutputStream out, Object stream) throws IOException {
+		MPEGTSParser parser = parsers.get(stream);
+		if (parser != null)
+			parser.writeHeader(out);
+	}
+
+	@Override
+	protected void clearCache(Object stream) {
+		parsers.remove(stream);
+	}
+
+	@Override
+	protected IStreamParser createParser(Object stream, IStreamListener listener) {
+		MPEGTSParser parser = new MPEGTSParser(listener);
+		parsers.put(stream, parser);
+		return parser;
+	}
+
 	@Override
 	protected void createReader(InputStream in, Object stream, IStreamListener listener) throws IOException {
+		IStreamParser parser = createParser(stream, listener);
 		byte[] b = new byte[PACKET_LEN * 500]; // a little over 90K
-		int offset = 0;
-		int len = 0;
 
 		while (!listener.isDone()) {
-			int n = in.read(b, offset + len, b.length - offset - len);
+			int n = in.read(b);
 			if (n == -1)
 				return;
 
-			len += n;
-
-			int numPackets = len / PACKET_LEN;
-			if (numPackets > 0) {
-				int sendBytes = PACKET_LEN * numPackets;
-				listener.write(b, offset, sendBytes);
-
-				offset += sendBytes;
-				len -= sendBytes;
-
-				listener.flush();
-			}
-
-			if (len == 0)
-				offset = 0;
-
-			if (offset > b.length / 3) {
-				// start is getting far enough into the array, move remaining bytes back to the
-				// beginning
-				System.arraycopy(b, offset, b, 0, len);
-				offset = 0;
-			}
+			parser.parse(b, 0, n);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -415,6 +415,14 @@ public interface IContest {
 	 */
 	ISubmission[] getSubmissions();
 
+	/**
+	 * Returns the submissions from the given team id.
+	 *
+	 * @param teamId a team identifier
+	 * @return the team's submissions, or <code>null</code> if there are none
+	 */
+	ISubmission[] getSubmissionsByTeamId(String teamId);
+
 	/**
 	 * Returns the total number of submission judgements.
 	 *
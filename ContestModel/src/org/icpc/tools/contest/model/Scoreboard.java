@@ -1,7 +1,12 @@
 package org.icpc.tools.contest.model;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.icpc.tools.contest.model.IContestObject.ContestType;
 import org.icpc.tools.contest.model.feed.JSONEncoder;
 import org.icpc.tools.contest.model.feed.RelativeTime;
 import org.icpc.tools.contest.model.feed.Timestamp;
@@ -10,25 +15,197 @@ import org.icpc.tools.contest.model.internal.ContestObject;
 import org.icpc.tools.contest.model.internal.State;
 
 public class Scoreboard {
+	// number of events between standings checkpoints, to start with
+	private static final int CHECKPOINT_INTERVAL = 5000;
+
+	// maximum number of checkpoints per contest. Each one keeps its own indexes of the objects in the
+	// contest, so past this every other checkpoint is dropped and the interval doubles
+	private static final int MAX_CHECKPOINTS = 8;
+
+	// keyed by identity, since a contest's hash code changes with every event
+	private static final Map<Contest, Checkpoints> checkpoints = new IdentityHashMap<>();
+
+	/**
+	 * A contest as of a given event, containing only the objects that affect the scoreboard but
+	 * reporting the event count and last timed event of the full contest.
+	 */
+	private static class HistoricContest extends Contest {
+		private int numObjects;
+		private IContestObject lastTimedObject;
+		private int lastTimedObjectIndex;
+		private int lastEventTime;
+
+		protected HistoricContest() {
+			super(false);
+		}
+
+		protected void replay(IContestObject obj) {
+			numObjects++;
+			if (obj instanceof ISubmission || obj instanceof IRun || obj instanceof IJudgement
+					|| obj instanceof IClarification) {
+				lastEventTime = Math.max(lastEventTime, ContestObject.getContestTime(obj));
+				lastTimedObject = obj;
+				lastTimedObjectIndex = numObjects;
+			}
+			if (affectsStandings(obj.getType()))
+				add(obj);
+		}
+
+		/**
+		 * Returns a copy of this contest that shares its objects until either of them changes.
+		 */
+		protected HistoricContest copy() {
+			HistoricContest hc = new HistoricContest();
+			hc.copy(this);
+			hc.numObjects = numObjects;
+			hc.lastTimedObject = lastTimedObject;
+			hc.lastTimedObjectIndex = lastTimedObjectIndex;
+			hc.lastEventTime = lastEventTime;
+			return hc;
+		}
+
+		@Override
+		public int getNumObjects() {
+			return numObjects;
+		}
+
+		@Override
+		public IContestObject getLastTimedObject() {
+			return lastTimedObject;
+		}
+
+		@Override
+		public int getLastTimedObjectEventIndex() {
+			return lastTimedObjectIndex;
+		}
+
+		@Override
+		public int getContestTimeOfLastEvent() {
+			return lastEventTime;
+		}
+	}
+
+	/**
+	 * The state of a historic contest after a given number of events. The checkpoint keeps a
+	 * copy-on-write copy of the contest that is never modified, so restoring it doesn't re-add any
+	 * objects, and only the events after the checkpoint need to be replayed.
+	 */
+	private static class Checkpoint {
+		private final HistoricContest hc;
+		private final IContestObject lastObject;
+
+		protected Checkpoint(HistoricContest last, IContestObject lastObject) {
+			this.lastObject = lastObject;
+			hc = last.copy();
+		}
+
+		protected int getNumObjects() {
+			return hc.numObjects;
+		}
+
+		protected HistoricContest restore() {
+			return hc.copy();
+		}
+	}
+
+	/**
+	 * Checkpoints at a regular interval of events of one contest, built as they are needed.
+	 */
+	private static class Checkpoints {
+		private final List<Checkpoint> list = new ArrayList<>();
+		private HistoricContest last;
+		private int interval = CHECKPOINT_INTERVAL;
+
+		protected synchronized Checkpoint getCheckpoint(Contest contest, int num) {
+			int target = num / interval;
+
+			// if events were removed from the contest, start over
+			if (target < list.size()) {
+				Checkpoint cp = list.get(target);
+				int n = cp.getNumObjects();
+				if (cp.lastObject != null && cp.lastObject != contest.getObjects(n - 1, n)[0]) {
+					list.clear();
+					last = null;
+					interval = CHECKPOINT_INTERVAL;
+					target = num / interval;
+				}
+			}
+
+			if (list.isEmpty()) {
+				last = new HistoricContest();
+				list.add(new Checkpoint(last, null));
+			}
+
+			while (list.size() <= target) {
+				if (last == null)
+					last = list.get(list.size() - 1).restore();
+
+				IContestObject[] objs = contest.getObjects(last.numObjects, last.numObjects + interval);
+				for (IContestObject obj : objs)
+					last.replay(obj);
+				list.add(new Checkpoint(last, objs[objs.length - 1]));
+
+				if (list.size() > MAX_CHECKPOINTS) {
+					for (int i = 1; i < list.size(); i++)
+						list.remove(i);
+					interval *= 2;
+					target = num / interval;
+					last = null;
+				}
+			}
+			return list.get(target);
+		}
+	}
+
+	/**
+	 * Release the historic scoreboard checkpoints of the given contest, if there are any.
+	 *
+	 * @param contest a contest
+	 */
+	public static void release(Contest contest) {
+		synchronized (checkpoints) {
+			checkpoints.remove(contest);
+		}
+	}
+
 	/**
-	 * Get the contest immediately after the given event id.
+	 * Returns true if objects of the given type can change the scoreboard, or false if they never
+	 * do (e.g. runs or clarifications).
+	 *
+	 * @param type a contest object type
+	 * @return true if the type can affect the standings
+	 */
+	public static boolean affectsStandings(ContestType type) {
+		return type == ContestType.SUBMISSION || type == ContestType.JUDGEMENT || type == ContestType.TEAM
+				|| type == ContestType.PROBLEM || type == ContestType.GROUP || type == ContestType.JUDGEMENT_TYPE
+				|| type == ContestType.STATE || type == ContestType.CONTEST;
+	}
+
+	/**
+	 * Get the contest immediately after the given event id. Historic contests only contain the
+	 * objects that affect the scoreboard, and are rebuilt from the nearest checkpoint so the cost
+	 * doesn't depend on how far into the contest the event is.
 	 */
 	public static Contest getScoreboard(Contest contest, int eventIndex) {
 		// if the index wasn't specified or is past the current event, output the current scoreboard
 		if (eventIndex <= 0 || eventIndex >= contest.getNumObjects())
 			return contest;
 
-		return contest.clone(true, new IContestObjectFilter() {
-			private int count = 1;
-
-			@Override
-			public IContestObject filter(IContestObject obj) {
-				if (count >= eventIndex)
-					return null;
-				count++;
-				return obj;
+		Checkpoints cps = null;
+		synchronized (checkpoints) {
+			cps = checkpoints.get(contest);
+			if (cps == null) {
+				cps = new Checkpoints();
+				checkpoints.put(contest, cps);
 			}
-		});
+		}
+
+		int num = eventIndex - 1;
+		Checkpoint cp = cps.getCheckpoint(contest, num);
+		HistoricContest hc = cp.restore();
+		for (IContestObject obj : contest.getObjects(cp.getNumObjects(), num))
+			hc.replay(obj);
+		return hc;
 	}
 
 	/**
@@ -625,7 +625,7 @@ public class DiskContestSource extends ContestSource {
 		try {
 			if (contestFile.getName().endsWith("json")) {
 				NDJSONFeedParser jsonParser = new NDJSONFeedParser();
-				jsonParser.parse(contest, in);
+				jsonParser.parseInParallel(contest, in);
 				parser = jsonParser;
 			} else {
 				XMLFeedParser xmlParser = new XMLFeedParser();
@@ -644,7 +644,8 @@ public class DiskContestSource extends ContestSource {
 			contest.removeModifier(mod);
 		}
 
-		Trace.trace(Trace.INFO, "Time to load EF: " + (System.currentTimeMillis() - time) + "ms");
+		Trace.trace(Trace.INFO, "Time to load EF from " + root + ": " + (System.currentTimeMillis() - time) + "ms ("
+				+ contest.getNumObjects() + " events)");
 	}
 
 	@Override
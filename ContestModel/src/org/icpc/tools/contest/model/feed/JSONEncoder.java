@@ -231,6 +231,10 @@ public class JSONEncoder {
 		local.set(host);
 	}
 
+	public static String getThreadHost() {
+		return local.get();
+	}
+
 	public void encodeSubs(String name, FileReferenceList refList, boolean force) {
 		if (!force && (refList == null || refList.isEmpty()))
 			return;
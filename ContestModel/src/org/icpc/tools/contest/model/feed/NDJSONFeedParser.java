@@ -1,10 +1,17 @@
 package org.icpc.tools.contest.model.feed;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.IContestObject;
@@ -13,81 +20,599 @@ import org.icpc.tools.contest.model.internal.Contest;
 import org.icpc.tools.contest.model.internal.ContestObject;
 import org.icpc.tools.contest.model.internal.Deletion;
 
+/**
+ * Event feed parser. Reads UTF-8 bytes directly from the input stream and adds each property to
+ * the contest object as it is read, without creating a string for each line or an intermediate
+ * JSON object. Keys and short values (ids, labels, etc.) are shared through a small cache, so
+ * loading a large feed creates very little garbage.
+ */
 public class NDJSONFeedParser implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int CACHE_SIZE = 2048; // must be a power of 2
+	private static final int MAX_CACHED_LENGTH = 16;
+	private static final int BATCH_SIZE = 64 * 1024;
+	private static final int NUM_PARSE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	private static final String TYPE = "type";
+	private static final String ID = "id";
+	private static final String OP = "op";
+	private static final String DATA = "data";
+	private static final String DELETE = "delete";
+
 	protected String lastId;
 	protected String readUntilId;
-	protected BufferedReader br;
+	protected InputStream in;
 	protected boolean closed;
 
+	// input buffer, unparsed data is from start to end. The current line is from start to lineEnd
+	private byte[] buf = new byte[BUFFER_SIZE];
+	private int start;
+	private int end;
+	private int lineEnd;
+	private int ind;
+
+	// id of the last event parsed
+	private String eventId;
+
+	// a batch of parsed events, in feed order
+	private static class Batch {
+		List<IContestObject> objs = new ArrayList<>();
+		List<String> ids = new ArrayList<>();
+	}
+
+	// cache of short strings
+	private final byte[][] cacheBytes = new byte[CACHE_SIZE][];
+	private final String[] cacheStrings = new String[CACHE_SIZE];
+
 	public void parse(final Contest contest, InputStream in) throws Exception {
 		if (in == null)
 			return;
 
 		// { "id": "<id>", "type": "<event type>", "op":"create/update/delete", "data": { <data from
 		// endpoint> } }
-		String s = null;
+		this.in = in;
+		start = 0;
+		end = 0;
 		try {
-			br = new BufferedReader(new InputStreamReader(in, "UTF-8"));
-			s = br.readLine();
-			while (s != null) {
-				if (s.isEmpty() || s.startsWith("!")) { // heart beat or REST connector log message
-					s = null;
-					s = br.readLine();
+			while (readLine()) {
+				if (lineEnd == start || buf[start] == '!') { // heart beat or REST connector log message
+					nextLine();
 					continue;
 				}
 
 				try {
-					JSONParser rdr = new JSONParser(s);
-					JsonObject obj = rdr.readObject();
-					String type = obj.getString("type");
-					String op = obj.getString("op");
-					JsonObject data = obj.getJsonObject("data");
-
-					if ("delete".equals(op)) {
-						String id = data.getString("id");
-						IContestObject.ContestType cType = IContestObject.getTypeByName(type);
-						Deletion d = new Deletion(id, cType);
-						contest.add(d);
-					} else {
-						ContestObject co = (ContestObject) IContestObject.createByName(type);
-						if (co == null) {
-							Trace.trace(Trace.WARNING, "Unrecognized (ignored) type in event feed: " + type);
-							s = br.readLine();
-							continue;
-						}
-
-						for (String key : data.props.keySet())
-							co.add(key, data.props.get(key));
-
+					IContestObject obj = parseEvent();
+					if (obj != null) {
 						try {
-							contest.add(co);
+							contest.add(obj);
 						} catch (Exception e) {
-							Trace.trace(Trace.ERROR, "Could not add event to contest! (" + lastId + "): " + s, e);
+							Trace.trace(Trace.ERROR, "Could not add event to contest! (" + lastId + "): " + getLine(), e);
 						}
+						lastId = eventId;
 					}
-					lastId = obj.getString("id");
-					if (readUntilId != null && readUntilId.equals(lastId))
-						return;
 				} catch (Exception e) {
-					Trace.trace(Trace.ERROR, "Could not parse event feed line (" + lastId + "): " + s, e);
+					Trace.trace(Trace.ERROR, "Could not parse event feed line (" + lastId + "): " + getLine(), e);
 				}
+				nextLine();
+
+				if (readUntilId != null && readUntilId.equals(lastId))
+					return;
 
 				if (closed)
 					return;
+			}
+		} catch (Exception e) {
+			if (closed)
+				return;
+			Trace.trace(Trace.ERROR, "Could not parse event feed: (" + lastId + ") " + getLine(), e);
+			throw new IOException("Error parsing event feed");
+		}
+	}
+
+	/**
+	 * Parse a complete feed (e.g. a file on disk) using multiple threads: a splitter thread reads
+	 * the input and breaks it into batches of lines, a pool of threads parses each batch into
+	 * contest objects, and this thread adds them to the contest in the original order. The result
+	 * is the same as parse(), but large feeds load several times faster.
+	 *
+	 * @param contest a contest
+	 * @param in an input stream
+	 * @throws Exception if the feed could not be read
+	 */
+	public void parseInParallel(final Contest contest, InputStream in) throws Exception {
+		if (in == null)
+			return;
+
+		if (NUM_PARSE_THREADS < 2) {
+			parse(contest, in);
+			return;
+		}
 
-				s = null;
+		this.in = in;
+		start = 0;
+		end = 0;
 
-				// read next line
-				s = br.readLine();
+		final ExecutorService pool = Executors.newFixedThreadPool(NUM_PARSE_THREADS, r -> {
+			Thread t = new Thread(r, "Feed parser");
+			t.setDaemon(true);
+			return t;
+		});
+		final ThreadLocal<NDJSONFeedParser> parsers = ThreadLocal.withInitial(() -> new NDJSONFeedParser());
+		final BlockingQueue<Future<Batch>> queue = new ArrayBlockingQueue<>(NUM_PARSE_THREADS * 4);
+		final Future<Batch> done = CompletableFuture.completedFuture(null);
+		final Exception[] splitError = new Exception[1];
+
+		Thread splitter = new Thread("Feed splitter") {
+			@Override
+			public void run() {
+				try {
+					byte[] b = nextBatch();
+					while (b != null) {
+						final byte[] bb = b;
+						queue.put(pool.submit(() -> parsers.get().parseBatch(bb)));
+						b = nextBatch();
+					}
+				} catch (InterruptedException e) {
+					return;
+				} catch (Exception e) {
+					splitError[0] = e;
+				}
+				try {
+					queue.put(done);
+				} catch (InterruptedException e) {
+					// ignore
+				}
 			}
+		};
+		splitter.setDaemon(true);
+
+		try {
+			splitter.start();
+			while (true) {
+				Batch batch = queue.take().get();
+				if (batch == null)
+					break;
+
+				int size = batch.objs.size();
+				for (int i = 0; i < size; i++) {
+					IContestObject obj = batch.objs.get(i);
+					try {
+						contest.add(obj);
+					} catch (Exception e) {
+						Trace.trace(Trace.ERROR, "Could not add event to contest! (" + lastId + "): "
+								+ IContestObject.getTypeName(obj.getType()) + "/" + obj.getId(), e);
+					}
+					lastId = batch.ids.get(i);
+					if (readUntilId != null && readUntilId.equals(lastId))
+						return;
+				}
+
+				if (closed)
+					return;
+			}
+			if (splitError[0] != null)
+				throw splitError[0];
 		} catch (Exception e) {
 			if (closed)
 				return;
-			Trace.trace(Trace.ERROR, "Could not parse event feed: (" + lastId + ") " + s, e);
+			Trace.trace(Trace.ERROR, "Could not parse event feed: (" + lastId + ")", e);
 			throw new IOException("Error parsing event feed");
+		} finally {
+			splitter.interrupt();
+			pool.shutdownNow();
 		}
 	}
 
+	/**
+	 * Read the next batch of complete lines from the input.
+	 *
+	 * @return the lines, or null at the end of the stream
+	 */
+	private byte[] nextBatch() throws IOException {
+		if (!readLine())
+			return null;
+
+		// end of the first line, then extend to the last full line that fits in the batch
+		int batchEnd = lineEnd;
+		if (batchEnd < end && buf[batchEnd] == '\r')
+			batchEnd++;
+		batchEnd = Math.min(batchEnd + 1, end);
+		for (int i = Math.min(end, start + BATCH_SIZE) - 1; i >= batchEnd; i--) {
+			if (buf[i] == '\n') {
+				batchEnd = i + 1;
+				break;
+			}
+		}
+
+		byte[] b = new byte[batchEnd - start];
+		System.arraycopy(buf, start, b, 0, b.length);
+		start = batchEnd;
+		return b;
+	}
+
+	/**
+	 * Parse a batch of lines into contest objects.
+	 */
+	private Batch parseBatch(byte[] b) throws IOException {
+		buf = b;
+		start = 0;
+		end = b.length;
+		in = null;
+
+		Batch batch = new Batch();
+		while (start < end) {
+			readLine();
+			if (lineEnd > start && buf[start] != '!') { // not heart beat or REST connector log message
+				try {
+					IContestObject obj = parseEvent();
+					if (obj != null) {
+						batch.objs.add(obj);
+						batch.ids.add(eventId);
+					}
+				} catch (Exception e) {
+					Trace.trace(Trace.ERROR, "Could not parse event feed line: " + getLine(), e);
+				}
+			}
+			nextLine();
+		}
+		buf = null;
+		return batch;
+	}
+
+	/**
+	 * Find the next line in the buffer, reading more data if necessary.
+	 *
+	 * @return true if there is a line, or false at the end of the stream
+	 */
+	private boolean readLine() throws IOException {
+		int i = start;
+		while (true) {
+			while (i < end) {
+				if (buf[i] == '\n') {
+					lineEnd = i;
+					if (lineEnd > start && buf[lineEnd - 1] == '\r')
+						lineEnd--;
+					return true;
+				}
+				i++;
+			}
+
+			InputStream in2 = in;
+			if (in2 == null) {
+				if (closed)
+					return false;
+				lineEnd = end;
+				return end > start;
+			}
+
+			// no full line, move the partial line to the front and read more
+			if (start > 0) {
+				System.arraycopy(buf, start, buf, 0, end - start);
+				i -= start;
+				end -= start;
+				start = 0;
+			}
+			if (end == buf.length) {
+				byte[] temp = new byte[buf.length * 2];
+				System.arraycopy(buf, 0, temp, 0, end);
+				buf = temp;
+			}
+
+			int n = in2.read(buf, end, buf.length - end);
+			if (n < 0) {
+				// last line may not end in a newline
+				lineEnd = end;
+				return end > start;
+			}
+			end += n;
+		}
+	}
+
+	private void nextLine() {
+		start = Math.min(lineEnd + 1, end);
+		if (start < end && buf[start] == '\n')
+			start++;
+	}
+
+	private String getLine() {
+		if (start >= end)
+			return null;
+		return new String(buf, start, Math.max(0, Math.min(lineEnd, end) - start), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parse the current line into a contest object or deletion, and set the event id.
+	 *
+	 * @return the contest object, or null if the line should be ignored
+	 */
+	private IContestObject parseEvent() {
+		ind = start;
+		eventId = null;
+		expect('{');
+
+		String type = null;
+		String op = null;
+		String id = null;
+		ContestObject co = null;
+		String deleteId = null;
+		JsonObject data = null;
+		boolean hasData = false;
+
+		if (peek() == '}') {
+			ind++;
+			return null;
+		}
+
+		while (true) {
+			String key = readKey();
+			if (DATA.equals(key)) {
+				hasData = true;
+				if (peek() != '{')
+					readValue();
+				else if (type != null && op != null) {
+					// the usual case: type and op are known, so populate the object directly
+					if (DELETE.equals(op))
+						deleteId = readDeleteId();
+					else {
+						co = (ContestObject) IContestObject.createByName(type);
+						if (co == null)
+							readValue();
+						else
+							readObject(co);
+					}
+				} else
+					data = readObject(new JsonObject());
+			} else {
+				Object value = readValue();
+				if (TYPE.equals(key))
+					type = (String) value;
+				else if (OP.equals(key))
+					op = (String) value;
+				else if (ID.equals(key))
+					id = (String) value;
+			}
+
+			byte b = next();
+			if (b == '}')
+				break;
+			if (b != ',')
+				throw new IllegalArgumentException("Unexpected " + (char) b);
+		}
+
+		if (!hasData)
+			throw new IllegalArgumentException("No data");
+
+		if (data != null) {
+			// data came before the type or op
+			if (DELETE.equals(op))
+				deleteId = data.getString(ID);
+			else {
+				co = (ContestObject) IContestObject.createByName(type);
+				if (co != null) {
+					for (String key : data.props.keySet())
+						co.add(key, data.props.get(key));
+				}
+			}
+		}
+
+		eventId = id;
+		if (DELETE.equals(op)) {
+			if (deleteId == null)
+				throw new IllegalArgumentException("No id to delete");
+			IContestObject.ContestType cType = IContestObject.getTypeByName(type);
+			return new Deletion(deleteId, cType);
+		}
+
+		if (co == null)
+			Trace.trace(Trace.WARNING, "Unrecognized (ignored) type in event feed: " + type);
+		return co;
+	}
+
+	private String readDeleteId() {
+		expect('{');
+		String id = null;
+		if (peek() == '}') {
+			ind++;
+			return null;
+		}
+		while (true) {
+			String key = readKey();
+			Object value = readValue();
+			if (ID.equals(key))
+				id = (String) value;
+
+			byte b = next();
+			if (b == '}')
+				return id;
+			if (b != ',')
+				throw new IllegalArgumentException("Unexpected " + (char) b);
+		}
+	}
+
+	private ContestObject readObject(ContestObject co) {
+		expect('{');
+		if (peek() == '}') {
+			ind++;
+			return co;
+		}
+		while (true) {
+			String key = readKey();
+			co.add(key, readValue());
+
+			byte b = next();
+			if (b == '}')
+				return co;
+			if (b != ',')
+				throw new IllegalArgumentException("Unexpected " + (char) b);
+		}
+	}
+
+	private JsonObject readObject(JsonObject obj) {
+		expect('{');
+		if (peek() == '}') {
+			ind++;
+			return obj;
+		}
+		while (true) {
+			String key = readKey();
+			obj.props.put(key, readValue());
+
+			byte b = next();
+			if (b == '}')
+				return obj;
+			if (b != ',')
+				throw new IllegalArgumentException("Unexpected " + (char) b);
+		}
+	}
+
+	private Object[] readArray() {
+		expect('[');
+		if (peek() == ']') {
+			ind++;
+			return new Object[0];
+		}
+		List<Object> list = new ArrayList<>();
+		while (true) {
+			list.add(readValue());
+
+			byte b = next();
+			if (b == ']')
+				return list.toArray(new Object[0]);
+			if (b != ',')
+				throw new IllegalArgumentException("Unexpected " + (char) b);
+		}
+	}
+
+	private String readKey() {
+		expect('"');
+		String key = readString();
+		expect(':');
+		return key;
+	}
+
+	/**
+	 * Reads a value in the same form as JSONParser: a string, Boolean, null, JsonObject, or an
+	 * array of values. Numbers are left as strings.
+	 */
+	private Object readValue() {
+		byte b = peek();
+		if (b == '"') {
+			ind++;
+			return readString();
+		} else if (b == '{')
+			return readObject(new JsonObject());
+		else if (b == '[')
+			return readArray();
+
+		int st = ind;
+		boolean ascii = true;
+		while (ind < lineEnd) {
+			b = buf[ind];
+			if (b == ',' || b == '}' || b == ']')
+				break;
+			if (b < 0)
+				ascii = false;
+			ind++;
+		}
+		int en = ind;
+		while (en > st && isWhitespace(buf[en - 1]))
+			en--;
+
+		int len = en - st;
+		if (len == 4 && buf[st] == 't' && buf[st + 1] == 'r' && buf[st + 2] == 'u' && buf[st + 3] == 'e')
+			return Boolean.TRUE;
+		if (len == 5 && buf[st] == 'f' && buf[st + 1] == 'a' && buf[st + 2] == 'l' && buf[st + 3] == 's'
+				&& buf[st + 4] == 'e')
+			return Boolean.FALSE;
+		if (len == 4 && buf[st] == 'n' && buf[st + 1] == 'u' && buf[st + 2] == 'l' && buf[st + 3] == 'l')
+			return null;
+		if (len == 0)
+			throw new IllegalArgumentException("Missing value");
+		return getString(st, len, ascii);
+	}
+
+	/**
+	 * Reads a string up to the closing quote. The opening quote has already been read.
+	 */
+	private String readString() {
+		int st = ind;
+		boolean escaped = false;
+		boolean ascii = true;
+		while (true) {
+			if (ind >= lineEnd)
+				throw new IllegalArgumentException("Unexpected end of string");
+			byte b = buf[ind++];
+			if (b == '"')
+				break;
+			if (b == '\\') {
+				escaped = true;
+				ind++;
+			} else if (b < 0)
+				ascii = false;
+		}
+
+		int len = ind - 1 - st;
+		if (escaped)
+			return JSONParser.unescape(new String(buf, st, len, StandardCharsets.UTF_8));
+		return getString(st, len, ascii);
+	}
+
+	/**
+	 * Returns a string for the given bytes, using a cached copy for short ASCII strings.
+	 */
+	private String getString(int st, int len, boolean ascii) {
+		if (!ascii)
+			return new String(buf, st, len, StandardCharsets.UTF_8);
+		if (len > MAX_CACHED_LENGTH)
+			return new String(buf, st, len, StandardCharsets.ISO_8859_1);
+
+		int hash = len;
+		for (int i = 0; i < len; i++)
+			hash = 31 * hash + buf[st + i];
+		hash ^= (hash >>> 16);
+		int slot = hash & (CACHE_SIZE - 1);
+
+		byte[] cached = cacheBytes[slot];
+		if (cached != null && cached.length == len) {
+			int i = 0;
+			while (i < len && cached[i] == buf[st + i])
+				i++;
+			if (i == len)
+				return cacheStrings[slot];
+		}
+
+		byte[] b = new byte[len];
+		System.arraycopy(buf, st, b, 0, len);
+		String s = new String(b, StandardCharsets.ISO_8859_1);
+		cacheBytes[slot] = b;
+		cacheStrings[slot] = s;
+		return s;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private byte peek() {
+		while (ind < lineEnd && isWhitespace(buf[ind]))
+			ind++;
+		if (ind >= lineEnd)
+			throw new IllegalArgumentException("Unexpected end");
+		return buf[ind];
+	}
+
+	private byte next() {
+		byte b = peek();
+		ind++;
+		return b;
+	}
+
+	private void expect(char c) {
+		byte b = next();
+		if (b != c)
+			throw new IllegalArgumentException("Expected " + c + " but found " + (char) b);
+	}
+
 	public void readUntilEventId(String id) {
 		readUntilId = id;
 	}
@@ -95,17 +620,17 @@ public class NDJSONFeedParser implements Closeable {
 	@Override
 	public void close() {
 		closed = true;
-		if (br != null) {
+		if (in != null) {
 			try {
-				br.close();
+				in.close();
 			} catch (Exception e) {
 				// ignore
 			}
-			br = null;
+			in = null;
 		}
 	}
 
 	public String getLastEventId() {
 		return lastId;
 	}
-}
\ No newline at end of file
+}
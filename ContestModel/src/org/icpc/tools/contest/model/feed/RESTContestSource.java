@@ -661,9 +661,11 @@ public class RESTContestSource extends DiskContestSource {
 		InputStream in = null;
 		try {
 			Trace.trace(Trace.INFO, "Reading feed cache");
+			long time = System.currentTimeMillis();
 			in = new FileInputStream(feedCacheFile);
-			parser.parse(contest, in);
-			Trace.trace(Trace.INFO, "Done reading feed cache");
+			parser.parseInParallel(contest, in);
+			Trace.trace(Trace.INFO, "Done reading feed cache " + feedCacheFile + ": " + (System.currentTimeMillis() - time)
+					+ "ms (" + contest.getNumObjects() + " events)");
 		} catch (Exception e) {
 			Trace.trace(Trace.ERROR, "Error initializing feed", e);
 			throw e;
@@ -1,7 +1,9 @@
 package org.icpc.tools.contest.model.internal;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Pattern;
 
 import org.icpc.tools.contest.model.IAward;
@@ -135,6 +137,13 @@ public class Award extends ContestObject implements IAward {
 			props.put(COUNT, count);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Award o = (Award) obj;
+		return super.hasSamePropertiesImpl(obj) && Arrays.equals(teamIds, o.teamIds)
+				&& Objects.equals(citation, o.citation) && show == o.show && count == o.count;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IClarification;
 import org.icpc.tools.contest.model.IContest;
@@ -82,6 +83,14 @@ public class Clarification extends TimedEvent implements IClarification {
 		props.put(TEXT, text);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Clarification o = (Clarification) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(replyToId, o.replyToId)
+				&& Objects.equals(fromTeamId, o.fromTeamId) && Objects.equals(toTeamId, o.toTeamId)
+				&& Objects.equals(problemId, o.problemId) && Objects.equals(text, o.text);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -1,7 +1,9 @@
 package org.icpc.tools.contest.model.internal;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.ICommentary;
 import org.icpc.tools.contest.model.IContest;
@@ -66,6 +68,13 @@ public class Commentary extends TimedEvent implements ICommentary {
 		}
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Commentary o = (Commentary) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(message, o.message)
+				&& Arrays.equals(teamIds, o.teamIds) && Arrays.equals(problemIds, o.problemIds);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
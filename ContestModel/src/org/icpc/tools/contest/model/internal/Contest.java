@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -54,6 +55,7 @@ public class Contest implements IContest {
 	private IGroup[] groups;
 	private IOrganization[] organizations;
 	private ITeam[] teams;
+	private CollationKey[] teamNames;
 	private ITeamMember[] members;
 	private ISubmission[] submissions;
 	private IJudgement[] judgements;
@@ -70,6 +72,8 @@ public class Contest implements IContest {
 	private int[] order;
 	private ITeam[] orderedTeams;
 	private String[] fts;
+	private List<ISubmission>[][] teamProblemSubmissions;
+	private List<ISubmission>[] problemSubmissions;
 	private Recent[] recentActivity;
 	private IJudgementType[] submissionStatus;
 	private int lastEventTime;
@@ -172,6 +176,7 @@ public class Contest implements IContest {
 			languages = null;
 			groups = null;
 			teams = null;
+			teamNames = null;
 			organizations = null;
 			judgementTypes = null;
 			submissions = null;
@@ -182,89 +187,93 @@ public class Contest implements IContest {
 			runs = null;
 			clars = null;
 
-			order = null;
-			orderedTeams = null;
-			results = null;
-			resultSummary = null;
-			standings = null;
 			submissionStatus = null;
 			recentActivity = null;
-			fts = null;
+			clearResults();
 		} else if (type == ContestType.CONTEST) {
 			info = (Info) obj;
+
+			// duration and penalty time affect every result
+			clearResults();
 		} else if (type == ContestType.STATE) {
 			state = (State) obj;
 		} else if (type == ContestType.PROBLEM) {
 			problems = null;
 
-			order = null;
-			orderedTeams = null;
-			results = null;
-			resultSummary = null;
-			standings = null;
 			submissionStatus = null;
 			recentActivity = null;
-			fts = null;
+			clearResults();
 		} else if (type == ContestType.LANGUAGE) {
 			languages = null;
 		} else if (type == ContestType.GROUP) {
 			groups = null;
+
+			// hidden groups change which teams are ranked
+			clearResults();
 		} else if (type == ContestType.ORGANIZATION) {
 			organizations = null;
 		} else if (type == ContestType.JUDGEMENT_TYPE) {
 			judgementTypes = null;
+
+			// submission statuses refer to the old judgement type
+			submissionStatus = null;
+			clearResults();
 		} else if (type == ContestType.SUBMISSION) {
 			submissions = null;
 
-			order = null;
-			orderedTeams = null;
-			results = null;
-			resultSummary = null;
-			standings = null;
 			if (submissionStatus != null) {
 				if (delta == Delta.ADD) {
 					ISubmission s = (ISubmission) obj;
 					int sInd = getSubmissionIndex(s.getId());
 					if (sInd >= submissionStatus.length)
 						submissionStatus = null;
+					else if (sInd >= 0) // in case judgements arrived before the submission
+						submissionStatus[sInd] = getLastJudgementType(s.getId());
 				} else
 					submissionStatus = null;
 			}
 			recentActivity = null;
-			fts = null;
+
+			// new submissions only affect one team and problem, everything else needs a full recompute
+			if (delta == Delta.ADD && teamProblemSubmissions != null)
+				updateResults((ISubmission) obj, true);
+			else
+				clearResults();
 		} else if (type == ContestType.JUDGEMENT) {
 			judgements = null;
+			recentActivity = null;
 
-			order = null;
-			orderedTeams = null;
-			results = null;
-			resultSummary = null;
-			standings = null;
-			if (submissionStatus != null) {
-				if (delta == Delta.ADD) {
-					IJudgement sj = (IJudgement) obj;
-					IJudgementType jt = getJudgementTypeById(sj.getJudgementTypeId());
-					if (jt != null) {
-						int sInd2 = getSubmissionIndex(sj.getSubmissionId());
-						if (sInd2 >= 0)
-							submissionStatus[sInd2] = jt;
+			if (delta == Delta.DELETE) {
+				submissionStatus = null;
+				clearResults();
+			} else {
+				IJudgement sj = (IJudgement) obj;
+				if (submissionStatus != null) {
+					int sInd2 = getSubmissionIndex(sj.getSubmissionId());
+					if (sInd2 >= 0) {
+						if (delta == Delta.ADD) {
+							IJudgementType jt = getJudgementTypeById(sj.getJudgementTypeId());
+							if (jt != null)
+								submissionStatus[sInd2] = jt;
+						} else
+							submissionStatus[sInd2] = getLastJudgementType(sj.getSubmissionId());
 					}
-				} else
-					submissionStatus = null;
+				}
+
+				// judgements only affect the result of their submission
+				if (teamProblemSubmissions != null) {
+					ISubmission s = getSubmissionById(sj.getSubmissionId());
+					if (s != null)
+						updateResults(s, false);
+				}
 			}
-			recentActivity = null;
-			fts = null;
 		} else if (type == ContestType.TEAM) {
 			teams = null;
+			teamNames = null;
 
-			order = null;
-			orderedTeams = null;
-			results = null;
-			resultSummary = null;
-			standings = null;
 			submissionStatus = null;
 			recentActivity = null;
-			fts = null;
+			clearResults();
 		} else if (type == ContestType.TEAM_MEMBER) {
 			members = null;
 		} else if (type == ContestType.START_STATUS) {
@@ -282,6 +291,21 @@ public class Contest implements IContest {
 		}
 	}
 
+	/**
+	 * Clear all cached results, standings, and ranking. They will be fully recalculated the next
+	 * time they are needed.
+	 */
+	private void clearResults() {
+		order = null;
+		orderedTeams = null;
+		results = null;
+		resultSummary = null;
+		standings = null;
+		fts = null;
+		teamProblemSubmissions = null;
+		problemSubmissions = null;
+	}
+
 	/**
 	 * Removes an object from the contest. This method can be dangerous - listeners are not
 	 * notified.
@@ -324,26 +348,65 @@ public class Contest implements IContest {
 		}
 	}
 
+	/**
+	 * Returns a copy of this contest. A shallow copy shares the contest objects, object store, and
+	 * per-type arrays with this contest until either one changes, so it is cheap to fork a contest
+	 * to try out changes (e.g. in the resolver). Computed results and standings are not shared.
+	 *
+	 * @param deep true to also copy every contest object
+	 * @return the copy
+	 */
 	public Contest clone(boolean deep) {
 		Contest c = new Contest();
 
-		synchronized (data) {
-			if (deep) {
+		if (deep) {
+			synchronized (data) {
 				for (IContestObject o : data) {
 					if (o instanceof ContestObject)
 						c.add(((ContestObject) o).clone());
 					else
 						c.add(((Deletion) o).clone());
 				}
-			} else {
-				for (IContestObject co : data)
-					c.add(co);
 			}
-		}
+		} else
+			c.copy(this);
 
 		return c;
 	}
 
+	/**
+	 * Make this contest, which must be empty, a shallow copy of the given contest as described in
+	 * clone(boolean).
+	 *
+	 * @param contest the contest to copy
+	 */
+	protected void copy(Contest contest) {
+		synchronized (contest.data) {
+			data.clone(contest.data);
+			info = contest.info;
+			state = contest.state;
+			problems = contest.problems;
+			languages = contest.languages;
+			judgementTypes = contest.judgementTypes;
+			groups = contest.groups;
+			organizations = contest.organizations;
+			teams = contest.teams;
+			teamNames = contest.teamNames;
+			members = contest.members;
+			submissions = contest.submissions;
+			judgements = contest.judgements;
+			clars = contest.clars;
+			runs = contest.runs;
+			startStatus = contest.startStatus;
+			awards = contest.awards;
+			pauses = contest.pauses;
+			mapInfo = contest.mapInfo;
+			lastEventTime = contest.lastEventTime;
+			lastTimedEvent = contest.lastTimedEvent;
+			lastTimedEventIndex = contest.lastTimedEventIndex;
+		}
+	}
+
 	public Contest clone(IContestObjectFilter filter) {
 		return clone(true, filter);
 	}
@@ -399,6 +462,22 @@ public class Contest implements IContest {
 		}
 	}
 
+	/**
+	 * Returns the events in the given range.
+	 *
+	 * @param start the index of the first event
+	 * @param end the index after the last event
+	 * @return the events
+	 */
+	public IContestObject[] getObjects(int start, int end) {
+		synchronized (data) {
+			IContestObject[] co = new IContestObject[end - start];
+			for (int i = start; i < end; i++)
+				co[i - start] = data.get(i);
+			return co;
+		}
+	}
+
 	public IContestObject[] getObjects(ContestType type) {
 		synchronized (data) {
 			return data.toArray(type);
@@ -417,6 +496,15 @@ public class Contest implements IContest {
 		return data.size();
 	}
 
+	/**
+	 * Returns the approximate memory used to store the contest's object list and indexes, in bytes.
+	 */
+	public long getMemoryFootprint() {
+		synchronized (data) {
+			return data.getMemoryFootprint();
+		}
+	}
+
 	public IContestObject getObjectByTypeAndId(ContestType type, String id) {
 		if (id == null && IContestObject.isSingleton(type))
 			return data.getById(ContestObject.SINGLETON_ID, type);
@@ -739,6 +827,19 @@ public class Contest implements IContest {
 		}
 	}
 
+	/**
+	 * Returns collation keys for the team names, indexed by team. Used as a tie-breaker when ranking.
+	 */
+	private CollationKey[] getTeamNames() {
+		synchronized (data) {
+			if (teamNames != null)
+				return teamNames;
+
+			teamNames = Ranking.getCollationKeys(getTeams());
+			return teamNames;
+		}
+	}
+
 	@Override
 	public ITeamMember[] getTeamMembers() {
 		ITeamMember[] temp = members;
@@ -756,17 +857,13 @@ public class Contest implements IContest {
 
 	@Override
 	public ITeamMember[] getTeamMembersByTeamId(String id) {
-		ITeamMember[] temp = getTeamMembers();
-		List<ITeamMember> list = new ArrayList<>();
-		for (ITeamMember m : temp) {
-			if (id.equals(m.getTeamId()))
-				list.add(m);
+		ITeamMember[] tempMembers = null;
+		synchronized (data) {
+			tempMembers = data.getByReference(ITeamMember.class, ContestType.TEAM_MEMBER, id);
 		}
-		if (list.isEmpty())
+		if (tempMembers.length == 0)
 			return null;
 
-		ITeamMember[] tempMembers = list.toArray(new ITeamMember[0]);
-
 		// default sort: by last name with coaches to bottom
 		Arrays.sort(tempMembers, (o1, o2) -> {
 			if (o1.getRole() != null && o2.getRole() != null && !o1.getRole().equals(o2.getRole()))
@@ -905,6 +1002,13 @@ public class Contest implements IContest {
 
 			// sb.append((System.currentTimeMillis() - scoreTime) + "ms ");
 
+			@SuppressWarnings("unchecked")
+			List<ISubmission>[][] tempTeamProblemSubs = new List[numTeams][numProblems];
+			@SuppressWarnings("unchecked")
+			List<ISubmission>[] tempProblemSubs = new List[numProblems];
+			for (int j = 0; j < numProblems; j++)
+				tempProblemSubs[j] = new ArrayList<>();
+
 			String[] tempFTS = new String[numProblems];
 			int duration = getDuration();
 			for (ISubmission s : sortedSubs) {
@@ -914,6 +1018,11 @@ public class Contest implements IContest {
 					int problemIndex = getProblemIndex(s.getProblemId());
 
 					if (problemIndex >= 0 && teamIndex >= 0) {
+						if (tempTeamProblemSubs[teamIndex][problemIndex] == null)
+							tempTeamProblemSubs[teamIndex][problemIndex] = new ArrayList<>(4);
+						tempTeamProblemSubs[teamIndex][problemIndex].add(s);
+						tempProblemSubs[problemIndex].add(s);
+
 						IJudgementType jt = getJudgementType(s);
 						tempResults[teamIndex][problemIndex].addSubmission(this, s.getContestTime(), jt);
 
@@ -931,23 +1040,8 @@ public class Contest implements IContest {
 			}
 			// sb.append((System.currentTimeMillis() - scoreTime) + "ms ");
 
-			for (int i = 0; i < numTeams; i++) {
-				int numSolved = 0;
-				int penalty = 0;
-				int lastSolution = -1;
-				for (int j = 0; j < numProblems; j++) {
-					penalty += tempResults[i][j].getPenaltyTime();
-					if (tempResults[i][j].getStatus() == Status.SOLVED) {
-						int time = ContestUtil.getTimeInMin(tempResults[i][j].getContestTime());
-						penalty += time;
-						numSolved++;
-						if (time > lastSolution)
-							lastSolution = time;
-					}
-				}
-
-				tempStandings[i].init(numSolved, penalty, lastSolution);
-			}
+			for (int i = 0; i < numTeams; i++)
+				initStanding(tempStandings[i], tempResults[i]);
 
 			for (int i = 0; i < numTeams; i++) {
 				for (int j = 0; j < numProblems; j++)
@@ -969,19 +1063,164 @@ public class Contest implements IContest {
 				tempOrder = tempOrder2;
 			}
 
-			Ranking.rankIt(this, teams, tempStandings, tempOrder);
+			Ranking.rankIt(this, teams, getTeamNames(), tempStandings, tempOrder);
 
 			results = tempResults;
 			resultSummary = tempResultSummary;
 			standings = tempStandings;
 			order = tempOrder;
 			fts = tempFTS;
+			teamProblemSubmissions = tempTeamProblemSubs;
+			problemSubmissions = tempProblemSubs;
 
 			// sb.append((System.currentTimeMillis() - scoreTime) + "ms ");
 			// System.out.println(sb.toString() + objects.size() + " objects ");
 		}
 	}
 
+	protected static void initStanding(Standing standing, Result[] teamResults) {
+		int numSolved = 0;
+		int penalty = 0;
+		int lastSolution = -1;
+		for (Result r : teamResults) {
+			penalty += r.getPenaltyTime();
+			if (r.getStatus() == Status.SOLVED) {
+				int time = ContestUtil.getTimeInMin(r.getContestTime());
+				penalty += time;
+				numSolved++;
+				if (time > lastSolution)
+					lastSolution = time;
+			}
+		}
+
+		standing.init(numSolved, penalty, lastSolution);
+	}
+
+	/**
+	 * Incrementally update the results after a submission is added or judged. Only the result of
+	 * the submission's team and problem (and the previous or new first to solve) is recalculated,
+	 * and only the affected teams are moved in the ranking.
+	 *
+	 * Arrays are copied before modification so that callers who have already read the previous
+	 * results or standings are unaffected.
+	 *
+	 * @param s the new or judged submission
+	 * @param isNew true if the submission was just added, false if it was judged
+	 */
+	private void updateResults(ISubmission s, boolean isNew) {
+		int time = s.getContestTime();
+		if (time < 0 || time >= getDuration())
+			return;
+
+		int teamIndex = getTeamIndex(s.getTeamId());
+		int problemIndex = getProblemIndex(s.getProblemId());
+		if (teamIndex < 0 || problemIndex < 0 || teamIndex >= results.length
+				|| problemIndex >= problemSubmissions.length) {
+			Trace.trace(Trace.WARNING, "Invalid submission: " + s);
+			return;
+		}
+
+		if (isNew) {
+			List<ISubmission> list = teamProblemSubmissions[teamIndex][problemIndex];
+			if (list == null) {
+				list = new ArrayList<>(4);
+				teamProblemSubmissions[teamIndex][problemIndex] = list;
+			}
+			insertByTime(list, s);
+			insertByTime(problemSubmissions[problemIndex], s);
+		}
+
+		// recalculate first to solve for this problem
+		String oldFTS = fts[problemIndex];
+		String newFTS = null;
+		for (ISubmission ps : problemSubmissions[problemIndex]) {
+			int ti = getTeamIndex(ps.getTeamId());
+			if (ti < 0 || isTeamHidden(teams[ti]))
+				continue;
+
+			if (isSolved(ps)) {
+				newFTS = ps.getId();
+				break;
+			} else if (!isJudged(ps)) {
+				newFTS = "waiting for judgement";
+				break;
+			}
+		}
+
+		String[] tempFTS = fts;
+		if (newFTS == null ? oldFTS != null : !newFTS.equals(oldFTS)) {
+			tempFTS = Arrays.copyOf(fts, fts.length);
+			tempFTS[problemIndex] = newFTS;
+		}
+
+		// find the teams whose result for this problem may have changed
+		int[] changedTeams = new int[] { teamIndex, getFTSTeamIndex(oldFTS), getFTSTeamIndex(newFTS) };
+
+		Result[][] tempResults = Arrays.copyOf(results, results.length);
+		Standing[] tempStandings = Arrays.copyOf(standings, standings.length);
+		for (int i = 0; i < changedTeams.length; i++) {
+			int ti = changedTeams[i];
+			if (ti < 0 || (i > 0 && (ti == changedTeams[0] || ti == changedTeams[i - 1])))
+				continue;
+
+			Result r = new Result();
+			List<ISubmission> list = teamProblemSubmissions[ti][problemIndex];
+			if (list != null) {
+				for (ISubmission ts : list) {
+					r.addSubmission(this, ts.getContestTime(), getJudgementType(ts));
+					if (ts.getId().equals(tempFTS[problemIndex]))
+						r.setFTS();
+				}
+			}
+
+			tempResults[ti] = Arrays.copyOf(results[ti], results[ti].length);
+			tempResults[ti][problemIndex] = r;
+
+			Standing st = new Standing();
+			initStanding(st, tempResults[ti]);
+			tempStandings[ti] = st;
+		}
+
+		ProblemSummary[] tempResultSummary = Arrays.copyOf(resultSummary, resultSummary.length);
+		ProblemSummary ps = new ProblemSummary();
+		for (Result[] teamResults : tempResults)
+			ps.addResult(teamResults[problemIndex]);
+		tempResultSummary[problemIndex] = ps;
+
+		int[] tempOrder = Arrays.copyOf(order, order.length);
+		Ranking.rerank(getTeamNames(), tempStandings, tempOrder, changedTeams);
+
+		results = tempResults;
+		resultSummary = tempResultSummary;
+		standings = tempStandings;
+		order = tempOrder;
+		orderedTeams = null;
+		fts = tempFTS;
+	}
+
+	private int getFTSTeamIndex(String submissionId) {
+		if (submissionId == null)
+			return -1;
+
+		ISubmission s = getSubmissionById(submissionId);
+		if (s == null)
+			return -1;
+
+		return getTeamIndex(s.getTeamId());
+	}
+
+	/**
+	 * Insert a submission into a list that is sorted by contest time, after any submissions at the
+	 * same time.
+	 */
+	private static void insertByTime(List<ISubmission> list, ISubmission s) {
+		int time = s.getContestTime();
+		int i = list.size();
+		while (i > 0 && list.get(i - 1).getContestTime() > time)
+			i--;
+		list.add(i, s);
+	}
+
 	@Override
 	public boolean isTeamHidden(ITeam team) {
 		if (team == null)
@@ -1137,7 +1376,11 @@ public class Contest implements IContest {
 			results = null;
 			standings = null;
 			calculateResultsAndStandings();
-			Ranking.rankIt(this, teams, standings, Ranking.Scoring.UNOFFICIAL, order, AwardUtil.getLastBronze(this));
+			Ranking.rankIt(this, teams, getTeamNames(), standings, Ranking.Scoring.UNOFFICIAL, order, AwardUtil.getLastBronze(this));
+
+			// final ranking can't be incrementally updated
+			teamProblemSubmissions = null;
+			problemSubmissions = null;
 		}
 	}
 
@@ -1151,7 +1394,11 @@ public class Contest implements IContest {
 			results = null;
 			standings = null;
 			calculateResultsAndStandings();
-			Ranking.rankIt(this, teams, standings, Ranking.Scoring.OFFICIAL, order, AwardUtil.getLastBronze(this));
+			Ranking.rankIt(this, teams, getTeamNames(), standings, Ranking.Scoring.OFFICIAL, order, AwardUtil.getLastBronze(this));
+
+			// final ranking can't be incrementally updated
+			teamProblemSubmissions = null;
+			problemSubmissions = null;
 		}
 	}
 
@@ -1287,6 +1534,21 @@ public class Contest implements IContest {
 		return (ISubmission) data.getById(id, ContestType.SUBMISSION);
 	}
 
+	@Override
+	public ISubmission[] getSubmissionsByTeamId(String id) {
+		if (id == null)
+			return null;
+
+		ISubmission[] temp = null;
+		synchronized (data) {
+			temp = data.getByReference(ISubmission.class, ContestType.SUBMISSION, id);
+		}
+		if (temp.length == 0)
+			return null;
+
+		return temp;
+	}
+
 	@Override
 	public IJudgement[] getJudgements() {
 		IJudgement[] temp = judgements;
@@ -1317,16 +1579,32 @@ public class Contest implements IContest {
 		if (id == null)
 			return null;
 
-		IJudgement[] temp = getJudgements();
-		List<IJudgement> list = new ArrayList<>(2);
-		for (IJudgement sj : temp) {
-			if (id.equals(sj.getSubmissionId()))
-				list.add(sj);
+		IJudgement[] temp = null;
+		synchronized (data) {
+			temp = data.getByReference(IJudgement.class, ContestType.JUDGEMENT, id);
 		}
-		if (list.isEmpty())
+		if (temp.length == 0)
 			return null;
 
-		return list.toArray(new IJudgement[0]);
+		return temp;
+	}
+
+	/**
+	 * Returns the judgement type of the last judgement of the given submission that has one, or
+	 * null if the submission hasn't been judged.
+	 */
+	private IJudgementType getLastJudgementType(String submissionId) {
+		IJudgement[] sjs = getJudgementsBySubmissionId(submissionId);
+		if (sjs == null)
+			return null;
+
+		IJudgementType jt = null;
+		for (IJudgement sj : sjs) {
+			IJudgementType jt2 = getJudgementTypeById(sj.getJudgementTypeId());
+			if (jt2 != null)
+				jt = jt2;
+		}
+		return jt;
 	}
 
 	@Override
@@ -1491,16 +1769,14 @@ public class Contest implements IContest {
 		if (id == null)
 			return null;
 
-		IRun[] temp = getRuns();
-		List<IRun> list = new ArrayList<>();
-		for (IRun r : temp) {
-			if (id.equals(r.getJudgementId()))
-				list.add(r);
+		IRun[] temp = null;
+		synchronized (data) {
+			temp = data.getByReference(IRun.class, ContestType.RUN, id);
 		}
-		if (list.isEmpty())
+		if (temp.length == 0)
 			return null;
 
-		return list.toArray(new IRun[0]);
+		return temp;
 	}
 
 	@Override
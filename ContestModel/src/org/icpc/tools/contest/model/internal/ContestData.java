@@ -1,8 +1,10 @@
 package org.icpc.tools.contest.model.internal;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.icpc.tools.contest.model.IContest;
@@ -11,25 +13,38 @@ import org.icpc.tools.contest.model.IContestListener.Delta;
 import org.icpc.tools.contest.model.IContestObject;
 import org.icpc.tools.contest.model.IContestObject.ContestType;
 import org.icpc.tools.contest.model.IDelete;
+import org.icpc.tools.contest.model.IJudgement;
+import org.icpc.tools.contest.model.IRun;
+import org.icpc.tools.contest.model.ISubmission;
+import org.icpc.tools.contest.model.ITeamMember;
 
 /**
  * Unsynchronized contest object store, optimized for additions vs removals. Optimized toArray,
  * getById, and getByType.
+ *
+ * The full object list is stored in fixed-size segments that are allocated as needed, so there is
+ * no limit on the number of objects and segments that are emptied by removals are released.
+ *
+ * Copies share segments and type caches with the original (copy-on-write), so forking a contest
+ * only copies the parts that either side modifies afterward.
  */
 public class ContestData implements Iterable<IContestObject> {
 	private static final int ARRAY_SIZE = 10000;
-	private static final int NUM_ARRAYS = 200;
+	private static final int INITIAL_ARRAYS = 16;
 	private static final int NUM_TYPES = IContestObject.ContestType.values().length;
 
 	// true to keep history (objects that have been updated or deleted & delete entries), or false
 	// to only keep current
 	private boolean keepHistory;
 
-	// full object list (array of arrays) & current size
-	private IContestObject[][] objs = new IContestObject[NUM_ARRAYS][];
-	private Delta[][] deltas = new Delta[NUM_ARRAYS][];
+	// full object list (array of segments) & current size
+	private IContestObject[][] objs = new IContestObject[INITIAL_ARRAYS][];
+	private Delta[][] deltas = new Delta[INITIAL_ARRAYS][];
 	private int totalSize;
 
+	// segments that are shared with a copy, and must be copied before they are modified
+	private boolean[] sharedSegments = new boolean[INITIAL_ARRAYS];
+
 	// cache for each object type, index back into main list, and sizes per type
 	class TypeCache {
 		// cache of objects of this type
@@ -44,6 +59,10 @@ public class ContestData implements Iterable<IContestObject> {
 		// map of ids to local index for quick lookup
 		Map<String, Integer> idMap = new HashMap<>();
 
+		// map of referenced object ids (e.g. a judgement's submission id) to the objects of this type
+		// that refer to it, in type cache order. Only used for types that have a reference
+		Map<String, List<IContestObject>> refMap;
+
 		// boolean[] isUpdate;
 
 		@Override
@@ -54,6 +73,9 @@ public class ContestData implements Iterable<IContestObject> {
 
 	private TypeCache[] typeCache = new TypeCache[NUM_TYPES];
 
+	// type caches that are shared with a copy, and must be copied before they are modified
+	private boolean[] sharedTypes = new boolean[NUM_TYPES];
+
 	// last copy of toArray for convenience
 	private IContestObject[] toArray = null;
 
@@ -66,6 +88,102 @@ public class ContestData implements Iterable<IContestObject> {
 
 		for (int i = 0; i < NUM_TYPES; i++)
 			typeCache[i] = new TypeCache();
+
+		typeCache[ContestType.SUBMISSION.ordinal()].refMap = new HashMap<>();
+		typeCache[ContestType.JUDGEMENT.ordinal()].refMap = new HashMap<>();
+		typeCache[ContestType.RUN.ordinal()].refMap = new HashMap<>();
+		typeCache[ContestType.TEAM_MEMBER.ordinal()].refMap = new HashMap<>();
+	}
+
+	/**
+	 * Returns the id of the object that the given object refers to and is indexed by: the team of a
+	 * submission or team member, the submission of a judgement, or the judgement of a run.
+	 */
+	private static String getReferenceId(IContestObject obj) {
+		switch (obj.getType()) {
+			case SUBMISSION:
+				return ((ISubmission) obj).getTeamId();
+			case JUDGEMENT:
+				return ((IJudgement) obj).getSubmissionId();
+			case RUN:
+				return ((IRun) obj).getJudgementId();
+			case TEAM_MEMBER:
+				return ((ITeamMember) obj).getTeamId();
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Add an object to the reference index. Must be called after the object is in the type cache.
+	 */
+	private static void addReference(TypeCache tc, IContestObject obj) {
+		if (tc.refMap == null)
+			return;
+
+		String refId = getReferenceId(obj);
+		if (refId == null)
+			return;
+
+		List<IContestObject> list = tc.refMap.get(refId);
+		if (list == null) {
+			list = new ArrayList<>(2);
+			tc.refMap.put(refId, list);
+		}
+
+		// keep in type cache order, almost always at the end
+		int index = tc.idMap.get(obj.getId());
+		int i = list.size();
+		while (i > 0 && tc.idMap.get(list.get(i - 1).getId()) > index)
+			i--;
+		list.add(i, obj);
+	}
+
+	private static void removeReference(TypeCache tc, IContestObject obj) {
+		if (tc.refMap == null)
+			return;
+
+		String refId = getReferenceId(obj);
+		if (refId == null)
+			return;
+
+		List<IContestObject> list = tc.refMap.get(refId);
+		if (list == null)
+			return;
+
+		String id = obj.getId();
+		for (int i = 0; i < list.size(); i++) {
+			if (id.equals(list.get(i).getId())) {
+				list.remove(i);
+				break;
+			}
+		}
+		if (list.isEmpty())
+			tc.refMap.remove(refId);
+	}
+
+	/**
+	 * Replace an object in the reference index with an updated version.
+	 */
+	private static void updateReference(TypeCache tc, IContestObject oldObj, IContestObject newObj) {
+		if (tc.refMap == null)
+			return;
+
+		String oldRefId = getReferenceId(oldObj);
+		String newRefId = getReferenceId(newObj);
+		if (oldRefId != null && oldRefId.equals(newRefId)) {
+			List<IContestObject> list = tc.refMap.get(oldRefId);
+			String id = oldObj.getId();
+			for (int i = 0; i < list.size(); i++) {
+				if (id.equals(list.get(i).getId())) {
+					list.set(i, newObj);
+					return;
+				}
+			}
+		}
+
+		removeReference(tc, oldObj);
+		addReference(tc, newObj);
 	}
 
 	public int size() {
@@ -139,31 +257,15 @@ public class ContestData implements Iterable<IContestObject> {
 		Delta d = Delta.ADD;
 		if (current != null) {
 			// check if anything has changed
-			Map<String, Object> oldP = current.getProperties();
-			Map<String, Object> newP = obj.getProperties();
-
-			if (oldP.size() == newP.size()) {
-				boolean changed = false;
-				for (String oldK : oldP.keySet()) {
-					if (!"time".equals(oldK)) {
-						if ((oldP.get(oldK) == null && newP.get(oldK) == null)
-								|| (oldP.get(oldK) != null && oldP.get(oldK).equals(newP.get(oldK)))) {
-							// found match
-							continue;
-						}
-						changed = true;
-						break;
-					}
-				}
-
-				if (!changed)
-					return Delta.NOOP;
-			}
+			if (hasSameProperties(current, obj))
+				return Delta.NOOP;
 
 			if (!keepHistory(obj)) {
 				if (tc.cache != null) {
+					tc = getWritableTypeCache(type);
 					tc.cache[index] = obj;
 					set(tc.index[index], obj);
+					updateReference(tc, current, obj);
 				}
 				return Delta.UPDATE;
 			}
@@ -173,26 +275,141 @@ public class ContestData implements Iterable<IContestObject> {
 		return d;
 	}
 
+	/**
+	 * Returns true if the two objects have the same properties, ignoring time.
+	 */
+	private static boolean hasSameProperties(IContestObject oldObj, IContestObject newObj) {
+		if (oldObj instanceof ContestObject)
+			return ((ContestObject) oldObj).hasSameProperties(newObj);
+
+		Map<String, Object> oldP = oldObj.getProperties();
+		Map<String, Object> newP = newObj.getProperties();
+		if (oldP.size() != newP.size())
+			return false;
+
+		for (String oldK : oldP.keySet()) {
+			if (!"time".equals(oldK)) {
+				if ((oldP.get(oldK) == null && newP.get(oldK) == null)
+						|| (oldP.get(oldK) != null && oldP.get(oldK).equals(newP.get(oldK)))) {
+					// found match
+					continue;
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the type cache for the given type, copying it first if it is shared with a copy.
+	 */
+	private TypeCache getWritableTypeCache(int type) {
+		TypeCache tc = typeCache[type];
+		if (!sharedTypes[type])
+			return tc;
+
+		TypeCache tc2 = new TypeCache();
+		tc2.size = tc.size;
+		if (tc.cache != null) {
+			tc2.cache = tc.cache.clone();
+			tc2.index = tc.index.clone();
+		}
+		if (tc.idMap != null)
+			tc2.idMap = new HashMap<>(tc.idMap);
+		if (tc.refMap != null) {
+			tc2.refMap = new HashMap<>(tc.refMap.size() * 4 / 3 + 1);
+			for (Map.Entry<String, List<IContestObject>> entry : tc.refMap.entrySet())
+				tc2.refMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		}
+
+		typeCache[type] = tc2;
+		sharedTypes[type] = false;
+		return tc2;
+	}
+
+	/**
+	 * Make sure the given segment isn't shared with a copy before it is modified.
+	 */
+	private void makeSegmentWritable(int num) {
+		if (!sharedSegments[num])
+			return;
+
+		if (objs[num] != null) {
+			objs[num] = objs[num].clone();
+			deltas[num] = deltas[num].clone();
+		}
+		sharedSegments[num] = false;
+	}
+
+	/**
+	 * Make sure the segment with the given number exists, growing the segment list if necessary.
+	 */
+	private void ensureSegment(int num) {
+		if (num >= objs.length) {
+			int len = Math.max(num + 1, objs.length * 2);
+			IContestObject[][] tempObjs = new IContestObject[len][];
+			System.arraycopy(objs, 0, tempObjs, 0, objs.length);
+			objs = tempObjs;
+
+			Delta[][] tempDeltas = new Delta[len][];
+			System.arraycopy(deltas, 0, tempDeltas, 0, deltas.length);
+			deltas = tempDeltas;
+
+			boolean[] tempShared = new boolean[len];
+			System.arraycopy(sharedSegments, 0, tempShared, 0, sharedSegments.length);
+			sharedSegments = tempShared;
+		}
+		if (objs[num] == null) {
+			objs[num] = new IContestObject[ARRAY_SIZE];
+			deltas[num] = new Delta[ARRAY_SIZE];
+			sharedSegments[num] = false;
+		} else
+			makeSegmentWritable(num);
+	}
+
+	/**
+	 * Release any segments that are no longer used after removals.
+	 */
+	private void releaseSegments() {
+		int used = (totalSize + ARRAY_SIZE - 1) / ARRAY_SIZE;
+		for (int i = used; i < objs.length; i++) {
+			objs[i] = null;
+			deltas[i] = null;
+			sharedSegments[i] = false;
+		}
+
+		if (objs.length > INITIAL_ARRAYS && used < objs.length / 4) {
+			int len = Math.max(INITIAL_ARRAYS, objs.length / 2);
+			IContestObject[][] tempObjs = new IContestObject[len][];
+			System.arraycopy(objs, 0, tempObjs, 0, len);
+			objs = tempObjs;
+
+			Delta[][] tempDeltas = new Delta[len][];
+			System.arraycopy(deltas, 0, tempDeltas, 0, len);
+			deltas = tempDeltas;
+
+			boolean[] tempShared = new boolean[len];
+			System.arraycopy(sharedSegments, 0, tempShared, 0, len);
+			sharedSegments = tempShared;
+		}
+	}
+
 	private void deleteWhileKeepingHistory(Deletion obj) {
 		int arr = totalSize % ARRAY_SIZE;
 		int num = totalSize / ARRAY_SIZE;
+		ensureSegment(num);
 		IContestObject[] co = objs[num];
 		Delta[] delt = deltas[num];
-		if (co == null) {
-			co = new IContestObject[ARRAY_SIZE];
-			objs[num] = co;
-			delt = new Delta[ARRAY_SIZE];
-			deltas[num] = delt;
-		}
 		co[arr] = obj;
 		delt[arr] = Delta.DELETE;
 		toArray = null;
 
 		// remove the original from the type cache
 		int type = obj.getType().ordinal();
-		TypeCache tc = typeCache[type];
+		TypeCache tc = getWritableTypeCache(type);
 
 		int index = getIndexById(obj.getId(), type);
+		removeReference(tc, tc.cache[index]);
 		if (index < tc.size - 1) {
 			System.arraycopy(tc.cache, index + 1, tc.cache, index, tc.size - index - 1);
 			System.arraycopy(tc.index, index + 1, tc.index, index, tc.size - index - 1);
@@ -224,24 +441,21 @@ public class ContestData implements Iterable<IContestObject> {
 	private void addImpl(IContestObject obj, int index, Delta d) {
 		int arr = totalSize % ARRAY_SIZE;
 		int num = totalSize / ARRAY_SIZE;
+		ensureSegment(num);
 		IContestObject[] co = objs[num];
 		Delta[] delt = deltas[num];
-		if (co == null) {
-			co = new IContestObject[ARRAY_SIZE];
-			objs[num] = co;
-			delt = new Delta[ARRAY_SIZE];
-			deltas[num] = delt;
-		}
 		co[arr] = obj;
 		delt[arr] = d;
 		toArray = null;
 
-		TypeCache tc = typeCache[obj.getType().ordinal()];
+		TypeCache tc = getWritableTypeCache(obj.getType().ordinal());
 
 		// update case
 		if (index >= 0) {
+			IContestObject current = tc.cache[index];
 			tc.cache[index] = obj;
 			tc.index[index] = totalSize;
+			updateReference(tc, current, obj);
 			totalSize++;
 			return;
 		}
@@ -265,6 +479,7 @@ public class ContestData implements Iterable<IContestObject> {
 		if (tc.idMap == null)
 			tc.idMap = new HashMap<>();
 		tc.idMap.put(obj.getId(), tc.size);
+		addReference(tc, obj);
 
 		totalSize++;
 		tc.size++;
@@ -289,6 +504,33 @@ public class ContestData implements Iterable<IContestObject> {
 		return co;
 	}
 
+	/**
+	 * Returns the objects of the given type that refer to the given id, e.g. the judgements of a
+	 * submission. Only supported for submissions and team members (by team id), judgements (by
+	 * submission id), and runs (by judgement id).
+	 *
+	 * @param typeCl the class of the returned array
+	 * @param cType the type of objects to return
+	 * @param refId the id of the referenced object
+	 * @return the objects, or an empty array if there are none
+	 */
+	public <T extends IContestObject> T[] getByReference(Class<T> typeCl, IContestObject.ContestType cType,
+			String refId) {
+		TypeCache tc = typeCache[cType.ordinal()];
+		if (tc.refMap == null)
+			throw new IllegalArgumentException("No reference index for " + cType);
+
+		List<IContestObject> list = null;
+		if (refId != null)
+			list = tc.refMap.get(refId);
+		int len = list == null ? 0 : list.size();
+		@SuppressWarnings("unchecked")
+		final T[] co = (T[]) Array.newInstance(typeCl, len);
+		for (int i = 0; i < len; i++)
+			co[i] = typeCl.cast(list.get(i));
+		return co;
+	}
+
 	public IContestObject getById(String id, IContestObject.ContestType cType) {
 		int index = getIndexById(id, cType);
 		if (index == -1)
@@ -332,6 +574,7 @@ public class ContestData implements Iterable<IContestObject> {
 
 		int arr = index % ARRAY_SIZE;
 		int num = index / ARRAY_SIZE;
+		makeSegmentWritable(num);
 		objs[num][arr] = obj;
 		deltas[num][arr] = Delta.UPDATE;
 		toArray = null;
@@ -354,8 +597,9 @@ public class ContestData implements Iterable<IContestObject> {
 		if (keepHistory)
 			throw new RuntimeException("Can't delete without harming history");
 
-		for (int i = size(); i > num; i--)
-			removeImpl(get(i));
+		// removing an object also removes its earlier history, so the size may drop by more than one
+		while (totalSize > num)
+			removeImpl(get(totalSize - 1));
 	}
 
 	/**
@@ -369,11 +613,12 @@ public class ContestData implements Iterable<IContestObject> {
 		String id = obj.getId();
 
 		// start by removing from the id map and getting the master index
-		TypeCache tc = typeCache[type];
+		TypeCache tc = getWritableTypeCache(type);
 		if (tc.idMap == null || !tc.idMap.containsKey(id))
 			throw new IllegalArgumentException("Attempt to remove an object that doesn't exist: " + obj);
 
 		int tcIndex = tc.idMap.get(id);
+		removeReference(tc, tc.cache[tcIndex]);
 		tc.idMap.remove(id);
 
 		// remove from type cache, type cache index, and cache sizes
@@ -402,32 +647,39 @@ public class ContestData implements Iterable<IContestObject> {
 				ind++;
 		}
 
+		releaseSegments();
 		toArray = null;
 	}
 
 	private void removeData(int index, TypeCache tc) {
 		int arr = index % ARRAY_SIZE;
 		int num = index / ARRAY_SIZE;
+		for (int i = num; i < objs.length; i++)
+			makeSegmentWritable(i);
 		System.arraycopy(objs[num], arr + 1, objs[num], arr, ARRAY_SIZE - arr - 1);
 		System.arraycopy(deltas[num], arr + 1, deltas[num], arr, ARRAY_SIZE - arr - 1);
-		if (objs[num + 1] != null) {
+		if (num + 1 < objs.length && objs[num + 1] != null) {
 			objs[num][ARRAY_SIZE - 1] = objs[num + 1][0];
 			deltas[num][ARRAY_SIZE - 1] = deltas[num + 1][0];
 		}
 
-		for (int i = num + 1; i < NUM_ARRAYS; i++) {
+		for (int i = num + 1; i < objs.length; i++) {
 			if (objs[i] != null) {
 				System.arraycopy(objs[i], 1, objs[i], 0, ARRAY_SIZE - 1);
 				System.arraycopy(deltas[i], 1, deltas[i], 0, ARRAY_SIZE - 1);
 			}
-			if (i + 1 < NUM_ARRAYS && objs[i + 1] != null) {
+			if (i + 1 < objs.length && objs[i + 1] != null) {
 				objs[i][ARRAY_SIZE - 1] = objs[i + 1][0];
 				deltas[i][ARRAY_SIZE - 1] = deltas[i + 1][0];
 			}
 		}
 
 		// fix type cache references
-		for (TypeCache tc2 : typeCache) {
+		for (int t = 0; t < NUM_TYPES; t++) {
+			if (typeCache[t].size == 0)
+				continue;
+
+			TypeCache tc2 = getWritableTypeCache(t);
 			for (int i = 0; i < tc2.size; i++) {
 				if (tc2.index[i] > index)
 					tc2.index[i]--;
@@ -435,44 +687,36 @@ public class ContestData implements Iterable<IContestObject> {
 		}
 
 		totalSize--;
+
+		// clear the old last element so it can be garbage collected
+		objs[totalSize / ARRAY_SIZE][totalSize % ARRAY_SIZE] = null;
+		deltas[totalSize / ARRAY_SIZE][totalSize % ARRAY_SIZE] = null;
 	}
 
+	/**
+	 * Make this store a copy of the given one. No objects are copied: segments and type caches are
+	 * shared by both stores until one of them modifies them.
+	 *
+	 * @param list the store to copy
+	 */
 	public void clone(ContestData list) {
-		toArray = null;
+		toArray = list.toArray;
 
-		for (int i = 0; i < NUM_ARRAYS; i++) {
-			if (list.objs[i] != null) {
-				objs[i] = new IContestObject[list.objs[i].length];
-				System.arraycopy(list.objs[i], 0, objs[i], 0, list.objs[i].length);
-				deltas[i] = new Delta[list.deltas[i].length];
-				System.arraycopy(list.deltas[i], 0, deltas[i], 0, list.deltas[i].length);
+		objs = list.objs.clone();
+		deltas = list.deltas.clone();
+		totalSize = list.totalSize;
+		sharedSegments = new boolean[objs.length];
+		for (int i = 0; i < objs.length; i++) {
+			if (objs[i] != null) {
+				sharedSegments[i] = true;
+				list.sharedSegments[i] = true;
 			}
 		}
-		totalSize = list.totalSize;
 
+		typeCache = list.typeCache.clone();
 		for (int i = 0; i < NUM_TYPES; i++) {
-			TypeCache tc = typeCache[i];
-			TypeCache ltc = list.typeCache[i];
-
-			tc.size = ltc.size;
-
-			if (ltc.cache != null) {
-				tc.cache = new IContestObject[tc.size];
-				System.arraycopy(ltc.cache, 0, tc.cache, 0, tc.size);
-			}
-
-			if (ltc.index != null) {
-				tc.index = new int[tc.size];
-				System.arraycopy(ltc.index, 0, tc.index, 0, tc.size);
-			}
-
-			if (ltc.idMap != null) {
-				tc.idMap = new HashMap<>();
-
-				for (String key : ltc.idMap.keySet()) {
-					tc.idMap.put(key, ltc.idMap.get(key));
-				}
-			}
+			sharedTypes[i] = true;
+			list.sharedTypes[i] = true;
 		}
 	}
 
@@ -507,16 +751,49 @@ public class ContestData implements Iterable<IContestObject> {
 			ind += ARRAY_SIZE;
 			i++;
 		}
-		if (objs[i] != null)
+		if (ind < totalSize)
 			System.arraycopy(objs[i], 0, toArray, ind, totalSize - ind);
 		return toArray;
 	}
 
+	/**
+	 * Returns the approximate memory used by this store, in bytes. This only includes the store's
+	 * own arrays and indexes, not the contest objects themselves, which are shared with clones and
+	 * other contests.
+	 *
+	 * @return the memory footprint, in bytes
+	 */
+	public long getMemoryFootprint() {
+		final int REF = 8;
+		final int ARRAY_HEADER = 16;
+
+		long size = 2L * (ARRAY_HEADER + objs.length * REF);
+		for (int i = 0; i < objs.length; i++) {
+			if (objs[i] != null)
+				size += 2L * (ARRAY_HEADER + ARRAY_SIZE * REF);
+		}
+
+		for (TypeCache tc : typeCache) {
+			if (tc.cache != null)
+				size += ARRAY_HEADER + tc.cache.length * REF + ARRAY_HEADER + tc.index.length * 4;
+
+			// hash map entry and boxed index per object
+			if (tc.idMap != null)
+				size += tc.idMap.size() * (REF + 48L);
+
+			// hash map entry, list, and list element per object
+			if (tc.refMap != null)
+				size += tc.refMap.size() * (REF + 80L) + tc.size * REF;
+		}
+		return size;
+	}
+
 	public void listByType() {
 		System.out.println("Count by type:");
 		for (IContestObject.ContestType ct : IContestObject.ContestType.values()) {
 			System.out.println("  " + ct.name() + ": " + typeCache[ct.ordinal()].size);
 		}
+		System.out.println("Memory footprint: " + (getMemoryFootprint() / 1024) + "kB");
 	}
 
 	@Override
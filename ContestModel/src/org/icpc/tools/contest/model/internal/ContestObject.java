@@ -6,6 +6,9 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 
@@ -24,7 +27,8 @@ public abstract class ContestObject implements IContestObject {
 	protected static final String SINGLETON_ID = "main";
 
 	protected String id;
-	protected static List<String> ignoredProps = new ArrayList<>();
+	// may be added to from several parser threads at once
+	protected static Set<String> ignoredProps = ConcurrentHashMap.newKeySet();
 
 	public ContestObject() {
 		// default constructor
@@ -167,16 +171,41 @@ public abstract class ContestObject implements IContestObject {
 		}
 
 		String message = "Unknown property ignored: " + IContestObject.getTypeName(getType()) + "/" + name;
-		if (ignoredProps.contains(message))
-			return;
-		Trace.trace(Trace.WARNING, message);
-		ignoredProps.add(message);
+		if (ignoredProps.add(message))
+			Trace.trace(Trace.WARNING, message);
 	}
 
 	protected void getPropertiesImpl(Map<String, Object> props) {
 		props.put(ID, id);
 	}
 
+	/**
+	 * Returns true if the given object is the same class as this one and has the same properties,
+	 * ignoring the time it was sent. Fields are compared directly, so unlike comparing
+	 * getProperties() this doesn't create any objects.
+	 *
+	 * @param obj a contest object
+	 * @return true if the objects have the same properties, and false otherwise
+	 */
+	public final boolean hasSameProperties(IContestObject obj) {
+		if (obj == this)
+			return true;
+		if (obj == null || obj.getClass() != getClass())
+			return false;
+		return hasSamePropertiesImpl((ContestObject) obj);
+	}
+
+	/**
+	 * Compare the fields of this object to another object of the same class. Subclasses must
+	 * override to compare any properties they add in getPropertiesImpl().
+	 *
+	 * @param obj a contest object of the same class
+	 * @return true if the objects have the same properties, and false otherwise
+	 */
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		return Objects.equals(id, obj.id);
+	}
+
 	@Override
 	public final Object getProperty(String s) {
 		if (s == null)
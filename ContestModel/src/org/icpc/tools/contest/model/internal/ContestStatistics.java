@@ -0,0 +1,621 @@
+package org.icpc.tools.contest.model.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.icpc.tools.contest.model.IContest;
+import org.icpc.tools.contest.model.IContestListener;
+import org.icpc.tools.contest.model.IContestObject;
+import org.icpc.tools.contest.model.IContestObject.ContestType;
+import org.icpc.tools.contest.model.IJudgement;
+import org.icpc.tools.contest.model.IJudgementType;
+import org.icpc.tools.contest.model.ILanguage;
+import org.icpc.tools.contest.model.IResult;
+import org.icpc.tools.contest.model.ISubmission;
+import org.icpc.tools.contest.model.ITeam;
+import org.icpc.tools.contest.model.Status;
+
+/**
+ * Submission and result counters for statistics and charts: per problem, per language, per
+ * judgement type, by contest minute, and judging queue depth by contest second.
+ *
+ * The statistics listen to the contest and are updated incrementally: when a submission is added
+ * or judged, its previous contribution to each counter is removed and its new one added, so reads
+ * don't depend on the number of submissions. Changes to teams, problems, languages, or judgement
+ * types start over the next time the statistics are read.
+ */
+public class ContestStatistics implements IContestListener {
+	private static final int MS_PER_MIN = 60 * 1000;
+	private static final int QUEUE_INTERVAL = 1000;
+	private static final Status[] STATUSES = new Status[] { Status.SOLVED, Status.FAILED, Status.SUBMITTED };
+
+	/**
+	 * The contribution of one submission to the counters.
+	 */
+	private static class Entry {
+		protected String teamId;
+		protected int problem;
+		protected int language;
+		protected int minute;
+		protected Status status;
+		protected String judgementTypeId;
+		protected int queueStart;
+		protected int queueEnd;
+	}
+
+	private final IContest contest;
+	private boolean valid;
+
+	private int numProblems;
+	private Map<String, Integer> languageIndexes;
+	private Map<String, Entry> entries;
+
+	// submission counters
+	private int[] problemSubmissions;
+	private int[] problemSolutions;
+	private int[] languageSubmissions;
+	private int[] languageSolutions;
+	private Map<String, Integer> judgementTypeCounts;
+	private int[][] statusByMinute;
+	private int[][] problemByMinute;
+
+	// judge queue, as changes in depth at each interval
+	private int[] queueDiff;
+	private int[] openQueueDiff;
+
+	// result counters
+	private Map<String, IResult[]> results;
+	private Map<String, Integer> teamNumSolved;
+	private int teamsSolved;
+	private int totalAttempts;
+	private int totalSolved;
+	private int totalPending;
+	private long totalSolvedTime;
+	private int[] problemAttempts;
+	private int[] problemTeamsSolved;
+	private int[] fastestSolution;
+	private String[] fastestTeam;
+	private int[] mostAttempts;
+	private int[] lastSolution;
+
+	/**
+	 * Create statistics for the given contest. The statistics listen to the contest until they are
+	 * disposed.
+	 *
+	 * @param contest a contest
+	 */
+	public ContestStatistics(IContest contest) {
+		this.contest = contest;
+		contest.addListener(this);
+	}
+
+	/**
+	 * Stop listening to the contest.
+	 */
+	public void dispose() {
+		contest.removeListener(this);
+	}
+
+	@Override
+	public void contestChanged(IContest contest2, IContestObject obj, Delta delta) {
+		ContestType type = obj.getType();
+		if (type == ContestType.SUBMISSION) {
+			synchronized (this) {
+				if (!valid)
+					return;
+
+				if (delta == Delta.DELETE)
+					update(obj.getId(), null);
+				else
+					update(obj.getId(), (ISubmission) obj);
+			}
+		} else if (type == ContestType.JUDGEMENT) {
+			synchronized (this) {
+				if (!valid)
+					return;
+
+				// deletions don't say which submission was judged
+				if (delta == Delta.DELETE) {
+					valid = false;
+					return;
+				}
+
+				String sId = ((IJudgement) obj).getSubmissionId();
+				ISubmission s = contest.getSubmissionById(sId);
+				if (s != null)
+					update(sId, s);
+			}
+		} else if (type == ContestType.TEAM || type == ContestType.PROBLEM || type == ContestType.LANGUAGE
+				|| type == ContestType.JUDGEMENT_TYPE || type == ContestType.CONTEST) {
+			synchronized (this) {
+				valid = false;
+			}
+		}
+	}
+
+	/**
+	 * Start over with the current submissions.
+	 */
+	private void init() {
+		numProblems = contest.getNumProblems();
+		ILanguage[] langs = contest.getLanguages();
+		languageIndexes = new HashMap<>();
+		for (int i = 0; i < langs.length; i++)
+			languageIndexes.put(langs[i].getId(), i);
+
+		entries = new HashMap<>();
+		problemSubmissions = new int[numProblems];
+		problemSolutions = new int[numProblems];
+		languageSubmissions = new int[langs.length];
+		languageSolutions = new int[langs.length];
+		judgementTypeCounts = new HashMap<>();
+		statusByMinute = new int[STATUSES.length][0];
+		problemByMinute = new int[numProblems][0];
+		queueDiff = new int[0];
+		openQueueDiff = new int[0];
+
+		results = new HashMap<>();
+		teamNumSolved = new HashMap<>();
+		teamsSolved = 0;
+		totalAttempts = 0;
+		totalSolved = 0;
+		totalPending = 0;
+		totalSolvedTime = 0;
+		problemAttempts = new int[numProblems];
+		problemTeamsSolved = new int[numProblems];
+		fastestSolution = new int[numProblems];
+		fastestTeam = new String[numProblems];
+		mostAttempts = new int[numProblems];
+		lastSolution = new int[numProblems];
+		Arrays.fill(fastestSolution, -1);
+		Arrays.fill(mostAttempts, -1);
+		Arrays.fill(lastSolution, -1);
+
+		valid = true;
+		for (ISubmission s : contest.getSubmissions())
+			addEntry(s.getId(), s);
+
+		for (ITeam team : contest.getTeams()) {
+			for (int j = 0; j < numProblems; j++)
+				updateResult(team, j);
+		}
+	}
+
+	private void check() {
+		if (!valid)
+			init();
+	}
+
+	/**
+	 * Update the counters after a submission was added, judged, or removed.
+	 *
+	 * @param id the submission id
+	 * @param s the submission, or null if it was removed
+	 */
+	private void update(String id, ISubmission s) {
+		Entry old = entries.remove(id);
+		if (old != null)
+			count(old, -1);
+
+		Entry e = null;
+		if (s != null) {
+			e = addEntry(id, s);
+			updateResult(e.teamId, e.problem);
+		}
+
+		// the team or problem changed, or the submission was removed
+		if (old != null && (e == null || !old.teamId.equals(e.teamId) || old.problem != e.problem))
+			updateResult(old.teamId, old.problem);
+	}
+
+	private Entry addEntry(String id, ISubmission s) {
+		Entry e = new Entry();
+		e.teamId = s.getTeamId();
+		e.problem = contest.getProblemIndex(s.getProblemId());
+		if (e.problem >= numProblems)
+			e.problem = -1;
+		Integer li = languageIndexes.get(s.getLanguageId());
+		e.language = li == null ? -1 : li;
+		int time = s.getContestTime();
+		e.minute = Math.max(0, time / MS_PER_MIN);
+
+		IJudgementType jt = contest.getJudgementType(s);
+		if (jt == null)
+			e.status = Status.SUBMITTED;
+		else {
+			e.judgementTypeId = jt.getId();
+			e.status = jt.isSolved() ? Status.SOLVED : Status.FAILED;
+		}
+
+		// time in the queue, from submission to the end of the last judgement
+		e.queueStart = Math.max(0, (int) Math.ceil(time / (double) QUEUE_INTERVAL));
+		e.queueEnd = -1;
+		IJudgement[] js = contest.getJudgementsBySubmissionId(id);
+		if (js != null && js.length > 0) {
+			Integer end = js[js.length - 1].getEndContestTime();
+			if (end != null)
+				e.queueEnd = Math.max(0, (int) Math.floor(end / (double) QUEUE_INTERVAL));
+		}
+
+		entries.put(id, e);
+		count(e, 1);
+		return e;
+	}
+
+	private void count(Entry e, int n) {
+		boolean solved = e.status == Status.SOLVED;
+		if (e.problem >= 0) {
+			problemSubmissions[e.problem] += n;
+			if (solved)
+				problemSolutions[e.problem] += n;
+			problemByMinute[e.problem] = grow(problemByMinute[e.problem], e.minute);
+			problemByMinute[e.problem][e.minute] += n;
+		}
+		if (e.language >= 0) {
+			languageSubmissions[e.language] += n;
+			if (solved)
+				languageSolutions[e.language] += n;
+		}
+		if (e.judgementTypeId != null) {
+			Integer count = judgementTypeCounts.get(e.judgementTypeId);
+			judgementTypeCounts.put(e.judgementTypeId, (count == null ? 0 : count) + n);
+		}
+
+		int si = e.status == Status.SOLVED ? 0 : e.status == Status.FAILED ? 1 : 2;
+		statusByMinute[si] = grow(statusByMinute[si], e.minute);
+		statusByMinute[si][e.minute] += n;
+
+		if (e.queueEnd < 0) {
+			openQueueDiff = grow(openQueueDiff, e.queueStart);
+			openQueueDiff[e.queueStart] += n;
+		} else if (e.queueEnd > e.queueStart) {
+			queueDiff = grow(queueDiff, e.queueEnd);
+			queueDiff[e.queueStart] += n;
+			queueDiff[e.queueEnd] -= n;
+		}
+	}
+
+	private static int[] grow(int[] a, int index) {
+		if (index < a.length)
+			return a;
+		return Arrays.copyOf(a, Math.max(index + 1, a.length * 2));
+	}
+
+	/**
+	 * Update the result counters for one team and problem.
+	 */
+	private void updateResult(String teamId, int pi) {
+		if (teamId == null || pi < 0)
+			return;
+
+		ITeam team = contest.getTeamById(teamId);
+		if (team != null)
+			updateResult(team, pi);
+	}
+
+	private void updateResult(ITeam team, int pi) {
+		IResult[] teamResults = results.get(team.getId());
+		if (teamResults == null) {
+			teamResults = new IResult[numProblems];
+			results.put(team.getId(), teamResults);
+		}
+
+		IResult old = teamResults[pi];
+		IResult r = contest.getResult(team, pi);
+		teamResults[pi] = r;
+
+		boolean wasSolved = false;
+		if (old != null) {
+			totalAttempts -= old.getNumSubmissions();
+			problemAttempts[pi] -= old.getNumSubmissions();
+			totalPending -= old.getNumPending();
+			if (old.getStatus() == Status.SOLVED) {
+				wasSolved = true;
+				totalSolved--;
+				totalSolvedTime -= old.getContestTime();
+				problemTeamsSolved[pi]--;
+			}
+		}
+
+		boolean isSolved = false;
+		if (r != null) {
+			totalAttempts += r.getNumSubmissions();
+			problemAttempts[pi] += r.getNumSubmissions();
+			totalPending += r.getNumPending();
+			if (r.getStatus() == Status.SOLVED) {
+				isSolved = true;
+				totalSolved++;
+				totalSolvedTime += r.getContestTime();
+				problemTeamsSolved[pi]++;
+			}
+		}
+
+		if (wasSolved != isSolved) {
+			Integer count = teamNumSolved.get(team.getId());
+			int oldCount = count == null ? 0 : count;
+			int newCount = oldCount + (isSolved ? 1 : -1);
+			teamNumSolved.put(team.getId(), newCount);
+			if (oldCount == 0)
+				teamsSolved++;
+			else if (newCount == 0)
+				teamsSolved--;
+		}
+
+		if (wasSolved) {
+			// the fastest, last, or most attempted solution may have changed
+			updateProblemSolutions(pi);
+		} else if (isSolved) {
+			int time = r.getContestTime();
+			if (fastestSolution[pi] == -1 || time < fastestSolution[pi]) {
+				fastestSolution[pi] = time;
+				fastestTeam[pi] = team.getId();
+			}
+			if (r.getNumSubmissions() > mostAttempts[pi])
+				mostAttempts[pi] = r.getNumSubmissions();
+			if (time > lastSolution[pi])
+				lastSolution[pi] = time;
+		}
+	}
+
+	private void updateProblemSolutions(int pi) {
+		fastestSolution[pi] = -1;
+		fastestTeam[pi] = null;
+		mostAttempts[pi] = -1;
+		lastSolution[pi] = -1;
+		for (String teamId : results.keySet()) {
+			IResult r = results.get(teamId)[pi];
+			if (r == null || r.getStatus() != Status.SOLVED)
+				continue;
+
+			int time = r.getContestTime();
+			if (fastestSolution[pi] == -1 || time < fastestSolution[pi]) {
+				fastestSolution[pi] = time;
+				fastestTeam[pi] = teamId;
+			}
+			if (r.getNumSubmissions() > mostAttempts[pi])
+				mostAttempts[pi] = r.getNumSubmissions();
+			if (time > lastSolution[pi])
+				lastSolution[pi] = time;
+		}
+	}
+
+	// ---- submission counters ----
+
+	/**
+	 * Returns the number of submissions to a problem.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the number of submissions
+	 */
+	public synchronized int getNumSubmissions(int problemIndex) {
+		check();
+		return problemSubmissions[problemIndex];
+	}
+
+	/**
+	 * Returns the number of correct submissions to a problem, including any after a team solved it.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the number of correct submissions
+	 */
+	public synchronized int getNumSolutions(int problemIndex) {
+		check();
+		return problemSolutions[problemIndex];
+	}
+
+	/**
+	 * Returns the number of submissions in a language.
+	 *
+	 * @param languageIndex a language index
+	 * @return the number of submissions
+	 */
+	public synchronized int getNumLanguageSubmissions(int languageIndex) {
+		check();
+		return languageSubmissions[languageIndex];
+	}
+
+	/**
+	 * Returns the number of correct submissions in a language.
+	 *
+	 * @param languageIndex a language index
+	 * @return the number of correct submissions
+	 */
+	public synchronized int getNumLanguageSolutions(int languageIndex) {
+		check();
+		return languageSolutions[languageIndex];
+	}
+
+	/**
+	 * Returns the number of submissions whose current judgement is the given type.
+	 *
+	 * @param judgementTypeId a judgement type id
+	 * @return the number of submissions
+	 */
+	public synchronized int getNumJudgements(String judgementTypeId) {
+		check();
+		Integer count = judgementTypeCounts.get(judgementTypeId);
+		if (count == null)
+			return 0;
+		return count;
+	}
+
+	/**
+	 * Returns the number of submissions with the given status in each bucket of contest time.
+	 * Submissions after the last bucket are counted in the last bucket.
+	 *
+	 * @param status SOLVED, FAILED, or SUBMITTED (pending)
+	 * @param bucketMin the length of each bucket, in minutes
+	 * @param numBuckets the number of buckets
+	 * @return the number of submissions in each bucket
+	 */
+	public synchronized int[] getSubmissionsByTime(Status status, int bucketMin, int numBuckets) {
+		check();
+		int si = status == Status.SOLVED ? 0 : status == Status.FAILED ? 1 : 2;
+		return toBuckets(statusByMinute[si], bucketMin, numBuckets);
+	}
+
+	/**
+	 * Returns the number of submissions to a problem in each bucket of contest time. Submissions
+	 * after the last bucket are counted in the last bucket.
+	 *
+	 * @param problemIndex a problem index
+	 * @param bucketMin the length of each bucket, in minutes
+	 * @param numBuckets the number of buckets
+	 * @return the number of submissions in each bucket
+	 */
+	public synchronized int[] getSubmissionsByTime(int problemIndex, int bucketMin, int numBuckets) {
+		check();
+		return toBuckets(problemByMinute[problemIndex], bucketMin, numBuckets);
+	}
+
+	private static int[] toBuckets(int[] minutes, int bucketMin, int numBuckets) {
+		int[] buckets = new int[numBuckets];
+		for (int i = 0; i < minutes.length; i++)
+			buckets[Math.min(i / bucketMin, numBuckets - 1)] += minutes[i];
+		return buckets;
+	}
+
+	/**
+	 * Returns the number of submissions waiting for judgement at each second of the contest, up to
+	 * the given contest time. Submissions are in the queue until the end of their last judgement.
+	 *
+	 * @param now the current contest time, in ms
+	 * @param numPoints the number of seconds
+	 * @return the queue depth at each second
+	 */
+	public synchronized int[] getJudgeQueueDepth(int now, int numPoints) {
+		check();
+		int nowIndex = (int) Math.floor(now / (double) QUEUE_INTERVAL);
+		int[] depth = new int[numPoints];
+		int closed = 0;
+		int open = 0;
+		for (int i = 0; i < numPoints; i++) {
+			if (i < queueDiff.length)
+				closed += queueDiff[i];
+			if (i < openQueueDiff.length)
+				open += openQueueDiff[i];
+			depth[i] = closed + (i < nowIndex ? open : 0);
+		}
+		return depth;
+	}
+
+	// ---- result counters (using the same rules as the scoreboard) ----
+
+	/**
+	 * Returns the number of teams that have solved at least one problem.
+	 *
+	 * @return the number of teams
+	 */
+	public synchronized int getNumTeamsSolved() {
+		check();
+		return teamsSolved;
+	}
+
+	/**
+	 * Returns the total number of submissions that count on the scoreboard, i.e. not including
+	 * compile errors or submissions after a problem was solved.
+	 *
+	 * @return the number of submissions
+	 */
+	public synchronized int getNumAttempts() {
+		check();
+		return totalAttempts;
+	}
+
+	/**
+	 * Returns the number of submissions to a problem that count on the scoreboard.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the number of submissions
+	 */
+	public synchronized int getNumAttempts(int problemIndex) {
+		check();
+		return problemAttempts[problemIndex];
+	}
+
+	/**
+	 * Returns the total number of problems solved, by all teams.
+	 *
+	 * @return the number of problems solved
+	 */
+	public synchronized int getNumSolved() {
+		check();
+		return totalSolved;
+	}
+
+	/**
+	 * Returns the number of teams that have solved a problem.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the number of teams
+	 */
+	public synchronized int getNumSolved(int problemIndex) {
+		check();
+		return problemTeamsSolved[problemIndex];
+	}
+
+	/**
+	 * Returns the number of pending submissions that count on the scoreboard.
+	 *
+	 * @return the number of pending submissions
+	 */
+	public synchronized int getNumPending() {
+		check();
+		return totalPending;
+	}
+
+	/**
+	 * Returns the total contest time of all solutions.
+	 *
+	 * @return the total time, in ms
+	 */
+	public synchronized long getTotalSolvedTime() {
+		check();
+		return totalSolvedTime;
+	}
+
+	/**
+	 * Returns the contest time of the first solution to a problem.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the time, in ms, or -1 if the problem hasn't been solved
+	 */
+	public synchronized int getFastestSolution(int problemIndex) {
+		check();
+		return fastestSolution[problemIndex];
+	}
+
+	/**
+	 * Returns the id of the team with the first solution to a problem.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the team id, or null if the problem hasn't been solved
+	 */
+	public synchronized String getFastestTeam(int problemIndex) {
+		check();
+		return fastestTeam[problemIndex];
+	}
+
+	/**
+	 * Returns the highest number of submissions any team used to solve a problem.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the number of submissions, or -1 if the problem hasn't been solved
+	 */
+	public synchronized int getMostAttempts(int problemIndex) {
+		check();
+		return mostAttempts[problemIndex];
+	}
+
+	/**
+	 * Returns the contest time of the most recent solution to a problem.
+	 *
+	 * @param problemIndex a problem index
+	 * @return the time, in ms, or -1 if the problem hasn't been solved
+	 */
+	public synchronized int getLastSolution(int problemIndex) {
+		check();
+		return lastSolution[problemIndex];
+	}
+}
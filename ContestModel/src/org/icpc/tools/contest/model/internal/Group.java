@@ -4,6 +4,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -117,6 +118,14 @@ public class Group extends ContestObject implements IGroup {
 		props.put(LOGO, logo);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Group o = (Group) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(icpcId, o.icpcId)
+				&& Objects.equals(name, o.name) && Objects.equals(type, o.type) && isHidden == o.isHidden
+				&& Objects.equals(logo, o.logo);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -5,6 +5,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -270,6 +271,18 @@ public class Info extends ContestObject implements IInfo {
 		props.put(BANNER, banner);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Info o = (Info) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(name, o.name)
+				&& Objects.equals(formalName, o.formalName) && Objects.equals(startTime, o.startTime)
+				&& Objects.equals(pauseTime, o.pauseTime) && duration == o.duration
+				&& freezeDuration == o.freezeDuration && penalty == o.penalty
+				&& Double.compare(timeMultiplier, o.timeMultiplier) == 0
+				&& Double.compare(latitude, o.latitude) == 0 && Double.compare(longitude, o.longitude) == 0
+				&& Objects.equals(logo, o.logo) && Objects.equals(banner, o.banner);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
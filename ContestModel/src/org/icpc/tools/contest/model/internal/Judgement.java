@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.IContest;
@@ -154,6 +155,15 @@ public class Judgement extends ContestObject implements IJudgement {
 		}
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Judgement o = (Judgement) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(submissionId, o.submissionId)
+				&& Objects.equals(judgementTypeId, o.judgementTypeId) && maxRunTime == o.maxRunTime
+				&& startContestTime == o.startContestTime && startTime == o.startTime
+				&& Objects.equals(endContestTime, o.endContestTime) && Objects.equals(endTime, o.endTime);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
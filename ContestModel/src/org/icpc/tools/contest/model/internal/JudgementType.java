@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IJudgementType;
@@ -60,6 +61,13 @@ public class JudgementType extends ContestObject implements IJudgementType {
 		props.put(SOLVED, solved);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		JudgementType o = (JudgementType) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(name, o.name) && penalty == o.penalty
+				&& solved == o.solved;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
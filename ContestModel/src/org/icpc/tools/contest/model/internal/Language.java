@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.ILanguage;
@@ -38,6 +39,12 @@ public class Language extends ContestObject implements ILanguage {
 		props.put(NAME, name);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Language o = (Language) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(name, o.name);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -273,6 +273,15 @@ public class MapInfo extends ContestObject implements IMapInfo {
 			props.put(TEAM_AREA_DEPTH, round(teamAreaDepth));
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		MapInfo o = (MapInfo) obj;
+		return super.hasSamePropertiesImpl(obj) && Double.compare(tableWidth, o.tableWidth) == 0
+				&& Double.compare(tableDepth, o.tableDepth) == 0
+				&& Double.compare(teamAreaWidth, o.teamAreaWidth) == 0
+				&& Double.compare(teamAreaDepth, o.teamAreaDepth) == 0;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		if (!Double.isNaN(tableWidth))
@@ -5,6 +5,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -189,6 +190,16 @@ public class Organization extends ContestObject implements IOrganization {
 		props.put(LOGO, logo);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Organization o = (Organization) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(icpcId, o.icpcId)
+				&& Objects.equals(name, o.name) && Objects.equals(formalName, o.formalName)
+				&& Objects.equals(country, o.country) && Objects.equals(url, o.url)
+				&& Objects.equals(hashtag, o.hashtag) && Double.compare(latitude, o.latitude) == 0
+				&& Double.compare(longitude, o.longitude) == 0 && Objects.equals(logo, o.logo);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -62,6 +62,12 @@ public class Pause extends ContestObject implements IPause {
 			props.put(END, end + "");
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Pause o = (Pause) obj;
+		return super.hasSamePropertiesImpl(obj) && start == o.start && end == o.end;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -3,6 +3,7 @@ package org.icpc.tools.contest.model.internal;
 import java.awt.Color;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.IContest;
@@ -170,6 +171,15 @@ public class Problem extends ContestObject implements IProblem {
 			props.put(TIME_LIMIT, Decimal.format(timeLimit));
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Problem o = (Problem) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(label, o.label)
+				&& Objects.equals(name, o.name) && ordinal == o.ordinal && Objects.equals(color, o.color)
+				&& Objects.equals(rgb, o.rgb) && Double.compare(x, o.x) == 0 && Double.compare(y, o.y) == 0
+				&& testDataCount == o.testDataCount && timeLimit == o.timeLimit;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
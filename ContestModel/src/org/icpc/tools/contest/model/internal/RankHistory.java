@@ -0,0 +1,331 @@
+package org.icpc.tools.contest.model.internal;
+
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.icpc.tools.contest.model.IContest;
+import org.icpc.tools.contest.model.IContestListener;
+import org.icpc.tools.contest.model.IContestObject;
+import org.icpc.tools.contest.model.IContestObject.ContestType;
+import org.icpc.tools.contest.model.IJudgement;
+import org.icpc.tools.contest.model.IStanding;
+import org.icpc.tools.contest.model.ISubmission;
+import org.icpc.tools.contest.model.ITeam;
+
+/**
+ * The standings of every team at fixed steps (e.g. every 5 minutes) through the contest, using the
+ * same scoring as the live scoreboard. Step n is the scoreboard including every submission before
+ * contest time n * step length, judged as they are now.
+ *
+ * All steps are calculated in one pass over the submissions in time order, keeping the results and
+ * ranking of the previous step and only re-ranking the team of each submission. The history
+ * listens to the contest: when a submission is added or judged, only the steps from the one it was
+ * submitted in onwards are recalculated, the next time they are needed.
+ */
+public class RankHistory implements IContestListener {
+	private final IContest contest;
+	private final int stepLength;
+
+	/**
+	 * The results, standings, and ranking at the start of one step. Rows of results are copied
+	 * when they're modified, so steps can share them.
+	 */
+	private static class Step {
+		protected final Result[][] results;
+		protected final Standing[] standings;
+		protected final int[] order;
+
+		protected Step(Result[][] results, Standing[] standings, int[] order) {
+			this.results = results;
+			this.standings = standings;
+			this.order = order;
+		}
+	}
+
+	private ITeam[] teams;
+	private Map<String, Integer> teamIndexes;
+	private CollationKey[] names;
+	private int numProblems;
+	private int duration;
+
+	// all submissions in time order
+	private List<ISubmission> submissions;
+	private Step[] steps;
+
+	// the first step that needs to be recalculated, or -1 to start over
+	private int dirtyStep = -1;
+
+	/**
+	 * Create a rank history for the given contest. The history listens to the contest until it is
+	 * disposed.
+	 *
+	 * @param contest a contest
+	 * @param stepLength the length of each step, in ms
+	 */
+	public RankHistory(IContest contest, int stepLength) {
+		if (stepLength <= 0)
+			throw new IllegalArgumentException("Invalid step length");
+
+		this.contest = contest;
+		this.stepLength = stepLength;
+		contest.addListener(this);
+	}
+
+	/**
+	 * Stop listening to the contest.
+	 */
+	public void dispose() {
+		contest.removeListener(this);
+	}
+
+	public int getStepLength() {
+		return stepLength;
+	}
+
+	/**
+	 * Returns the number of steps, from the start of the contest (step 0, nothing submitted) to the
+	 * end.
+	 *
+	 * @return the number of steps
+	 */
+	public synchronized int getNumSteps() {
+		update();
+		return steps.length;
+	}
+
+	/**
+	 * Returns the standing of a team at the given step. Steps after the end of the contest return
+	 * the final standing.
+	 *
+	 * @param team a team
+	 * @param step a step
+	 * @return the standing, or null if the team isn't in the contest
+	 */
+	public synchronized IStanding getStanding(ITeam team, int step) {
+		update();
+		int ti = getTeamIndex(team);
+		if (ti < 0)
+			return null;
+
+		return getStep(step).standings[ti];
+	}
+
+	/**
+	 * Returns the rank order (position on the scoreboard, starting at 0) of a team at the given step.
+	 *
+	 * @param team a team
+	 * @param step a step
+	 * @return the position, or -1 if the team isn't in the contest or is hidden
+	 */
+	public synchronized int getOrderOf(ITeam team, int step) {
+		update();
+		int ti = getTeamIndex(team);
+		if (ti < 0)
+			return -1;
+
+		int[] order = getStep(step).order;
+		for (int i = 0; i < order.length; i++) {
+			if (order[i] == ti)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the total number of problems solved by all (non-hidden) teams at the given step.
+	 *
+	 * @param step a step
+	 * @return the number of problems solved
+	 */
+	public synchronized int getNumSolved(int step) {
+		update();
+		Step s = getStep(step);
+		int total = 0;
+		for (int ti : s.order)
+			total += s.standings[ti].getNumSolved();
+		return total;
+	}
+
+	private Step getStep(int step) {
+		if (step < 0)
+			return steps[0];
+		return steps[Math.min(step, steps.length - 1)];
+	}
+
+	private int getTeamIndex(ITeam team) {
+		if (team == null)
+			return -1;
+
+		Integer ti = teamIndexes.get(team.getId());
+		if (ti == null)
+			return -1;
+		return ti;
+	}
+
+	private int getStepOf(int time) {
+		if (time < 0)
+			return 0;
+		return time / stepLength + 1;
+	}
+
+	@Override
+	public void contestChanged(IContest contest2, IContestObject obj, Delta delta) {
+		ContestType type = obj.getType();
+		if (type == ContestType.SUBMISSION) {
+			synchronized (this) {
+				if (dirtyStep < 0)
+					return;
+
+				if (delta == Delta.ADD)
+					insertByTime(submissions, (ISubmission) obj);
+				else {
+					// the time may have changed, start over
+					dirtyStep = -1;
+					return;
+				}
+				markDirty(getStepOf(((ISubmission) obj).getContestTime()));
+			}
+		} else if (type == ContestType.JUDGEMENT) {
+			if (delta == Delta.DELETE) {
+				// deletions don't say which submission was judged
+				synchronized (this) {
+					dirtyStep = -1;
+				}
+				return;
+			}
+
+			ISubmission s = contest.getSubmissionById(((IJudgement) obj).getSubmissionId());
+			if (s == null)
+				return;
+
+			synchronized (this) {
+				markDirty(getStepOf(s.getContestTime()));
+			}
+		} else if (type == ContestType.TEAM || type == ContestType.PROBLEM || type == ContestType.GROUP
+				|| type == ContestType.JUDGEMENT_TYPE || type == ContestType.CONTEST) {
+			synchronized (this) {
+				dirtyStep = -1;
+			}
+		}
+	}
+
+	private void markDirty(int step) {
+		if (dirtyStep >= 0 && step < dirtyStep)
+			dirtyStep = step;
+	}
+
+	private static void insertByTime(List<ISubmission> list, ISubmission s) {
+		int time = s.getContestTime();
+		int i = list.size();
+		while (i > 0 && list.get(i - 1).getContestTime() > time)
+			i--;
+		list.add(i, s);
+	}
+
+	/**
+	 * Recalculate any steps that have changed.
+	 */
+	private void update() {
+		if (dirtyStep < 0)
+			init();
+		else if (dirtyStep >= steps.length)
+			return;
+
+		int step = Math.max(1, dirtyStep);
+		Step prev = steps[step - 1];
+		Result[][] results = Arrays.copyOf(prev.results, prev.results.length);
+		Standing[] standings = Arrays.copyOf(prev.standings, prev.standings.length);
+		int[] order = Arrays.copyOf(prev.order, prev.order.length);
+
+		// find the first submission in this step
+		int start = (step - 1) * stepLength;
+		int low = 0;
+		int high = submissions.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (submissions.get(mid).getContestTime() < start)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		int si = low;
+		int numSubmissions = submissions.size();
+		for (; step < steps.length; step++) {
+			int end = Math.min(step * stepLength, duration);
+			while (si < numSubmissions && submissions.get(si).getContestTime() < end) {
+				ISubmission s = submissions.get(si++);
+				if (s.getContestTime() < 0)
+					continue;
+
+				Integer ti = teamIndexes.get(s.getTeamId());
+				int pi = contest.getProblemIndex(s.getProblemId());
+				if (ti == null || pi < 0 || pi >= numProblems)
+					continue;
+
+				Result[] row = Arrays.copyOf(results[ti], numProblems);
+				Result r = row[pi].copy();
+				r.addSubmission(null, s.getContestTime(), contest.getJudgementType(s));
+				row[pi] = r;
+				results[ti] = row;
+
+				Standing st = new Standing();
+				Contest.initStanding(st, row);
+				standings[ti] = st;
+				Ranking.rerank(names, standings, order, ti);
+			}
+
+			steps[step] = new Step(Arrays.copyOf(results, results.length), Arrays.copyOf(standings, standings.length),
+					Arrays.copyOf(order, order.length));
+		}
+
+		dirtyStep = steps.length;
+	}
+
+	/**
+	 * Start over with the current teams, problems, and submissions.
+	 */
+	private void init() {
+		teams = contest.getTeams();
+		numProblems = contest.getNumProblems();
+		duration = contest.getDuration();
+		names = Ranking.getCollationKeys(teams);
+
+		int numTeams = teams.length;
+		teamIndexes = new HashMap<>();
+		for (int i = 0; i < numTeams; i++)
+			teamIndexes.put(teams[i].getId(), i);
+
+		ISubmission[] subs = contest.getSubmissions();
+		submissions = new ArrayList<>(subs.length + 100);
+		for (ISubmission s : subs)
+			submissions.add(s);
+		submissions.sort((s1, s2) -> Integer.compare(s1.getContestTime(), s2.getContestTime()));
+
+		Result[][] results = new Result[numTeams][numProblems];
+		Standing[] standings = new Standing[numTeams];
+		for (int i = 0; i < numTeams; i++) {
+			standings[i] = new Standing();
+			for (int j = 0; j < numProblems; j++)
+				results[i][j] = new Result();
+			Contest.initStanding(standings[i], results[i]);
+		}
+
+		int[] order = new int[numTeams];
+		int visibleTeams = 0;
+		for (int i = 0; i < numTeams; i++) {
+			if (!contest.isTeamHidden(teams[i]))
+				order[visibleTeams++] = i;
+		}
+		order = Arrays.copyOf(order, visibleTeams);
+		Ranking.rankIt(contest, teams, names, standings, order);
+
+		steps = new Step[(Math.max(0, duration) + stepLength - 1) / stepLength + 1];
+		steps[0] = new Step(results, standings, order);
+		dirtyStep = 1;
+	}
+}
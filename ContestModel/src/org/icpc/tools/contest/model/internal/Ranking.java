@@ -1,6 +1,8 @@
 package org.icpc.tools.contest.model.internal;
 
+import java.text.CollationKey;
 import java.text.Collator;
+import java.util.Arrays;
 import java.util.Locale;
 
 import org.icpc.tools.contest.model.IContest;
@@ -21,50 +23,146 @@ public class Ranking {
 		// do not call
 	}
 
-	protected static void rankIt(IContest contest, ITeam[] teams, IStanding[] standings, int[] order) {
-		rankIt(contest, teams, standings, Scoring.LIVE, order, 12);
+	/**
+	 * Returns collation keys for the display name of each team, for faster sorting.
+	 *
+	 * @param teams the teams
+	 * @return the collation keys, indexed by team
+	 */
+	public static CollationKey[] getCollationKeys(ITeam[] teams) {
+		CollationKey[] keys = new CollationKey[teams.length];
+		for (int i = 0; i < teams.length; i++) {
+			String name = teams[i].getActualDisplayName();
+			if (name == null)
+				name = "";
+			keys[i] = collator.getCollationKey(name);
+		}
+		return keys;
+	}
+
+	/**
+	 * Sort and rank the teams using the live scoring rules.
+	 *
+	 * @param contest the contest
+	 * @param teams the teams
+	 * @param names the collation keys of the team names, indexed by team
+	 * @param standings the standings, indexed by team
+	 * @param order the sort order, updated in place
+	 */
+	public static void rankIt(IContest contest, ITeam[] teams, CollationKey[] names, IStanding[] standings,
+			int[] order) {
+		rankIt(contest, teams, names, standings, Scoring.LIVE, order, 12);
 	}
 
-	protected static void rankIt(IContest contest, ITeam[] teams, IStanding[] standings, Scoring scoring, int[] order,
-			int lastBronze) {
-		sort(contest, teams, standings, order);
+	protected static void rankIt(IContest contest, ITeam[] teams, CollationKey[] names, IStanding[] standings,
+			Scoring scoring, int[] order, int lastBronze) {
+		sort(names, standings, order);
 		if (scoring == Scoring.OFFICIAL)
 			sortOfficial(contest, standings, teams, order, scoring, lastBronze);
 		rank(standings, teams, order, scoring, lastBronze);
 	}
 
 	/**
-	 * Sort the teams based on their current standing.
+	 * Update a live ranking after the standings of a few teams have changed. The given teams are
+	 * moved to their correct position in the (otherwise sorted) order, and the ranks of any teams
+	 * that changed are updated. Standings are replaced instead of modified, so the standings array
+	 * must be a copy.
+	 *
+	 * @param names the collation keys of the team names, indexed by team
+	 * @param standings the standings, indexed by team
+	 * @param order the current sort order, updated in place
+	 * @param teamIndexes the index of the teams that changed, ignored if negative
 	 */
-	private static void sort(IContest contest, ITeam[] teams, IStanding[] standings, int[] order) {
-		int numTeams = order.length;
-
-		for (int i = 0; i < numTeams - 1; i++) {
-			for (int j = i + 1; j < numTeams; j++) {
-				boolean swap = false;
-				IStanding si = standings[order[i]];
-				IStanding sj = standings[order[j]];
-				if (si.getNumSolved() < sj.getNumSolved())
-					swap = true;
-				else if (si.getNumSolved() == sj.getNumSolved()) {
-					if (si.getTime() > sj.getTime())
-						swap = true;
-					else if (si.getTime() == sj.getTime()) {
-						if (si.getLastSolutionTime() > sj.getLastSolutionTime())
-							swap = true;
-						else if (si.getLastSolutionTime() == sj.getLastSolutionTime()) {
-							String tin = teams[order[i]].getActualDisplayName();
-							String tjn = teams[order[j]].getActualDisplayName();
-							if (collator.compare(tin, tjn) > 0)
-								swap = true;
-						}
-					}
+	protected static void rerank(CollationKey[] names, Standing[] standings, int[] order, int... teamIndexes) {
+		// remove the teams that changed
+		int size = 0;
+		int numMoved = 0;
+		int[] moved = new int[teamIndexes.length];
+		for (int i = 0; i < order.length; i++) {
+			boolean found = false;
+			for (int ti : teamIndexes) {
+				if (order[i] == ti) {
+					found = true;
+					break;
 				}
+			}
+			if (found)
+				moved[numMoved++] = order[i];
+			else
+				order[size++] = order[i];
+		}
 
-				if (swap)
-					swapOrder(order, i, j);
+		// and insert them back into the correct location
+		for (int m = 0; m < numMoved; m++) {
+			int ti = moved[m];
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (compare(names, standings, order[mid], ti) > 0)
+					high = mid;
+				else
+					low = mid + 1;
 			}
+			System.arraycopy(order, low, order, low + 1, size - low);
+			order[low] = ti;
+			size++;
 		}
+
+		// update ranks
+		Standing first = null;
+		String rank = null;
+		for (int i = 0; i < order.length; i++) {
+			Standing st = standings[order[i]];
+			if (first == null || !isTied(first, st)) {
+				first = st;
+				rank = (i + 1) + "";
+			}
+
+			if (!rank.equals(st.getRank())) {
+				Standing st2 = new Standing();
+				st2.init(st.getNumSolved(), st.getTime(), st.getLastSolutionTime());
+				st2.setRank(rank);
+				standings[order[i]] = st2;
+				if (first == st)
+					first = st2;
+			}
+		}
+	}
+
+	private static boolean isTied(IStanding s1, IStanding s2) {
+		return s1.getNumSolved() == s2.getNumSolved() && s1.getTime() == s2.getTime()
+				&& s1.getLastSolutionTime() == s2.getLastSolutionTime();
+	}
+
+	/**
+	 * Compare two teams based on their current standing, using the team name as a tie-breaker.
+	 */
+	private static int compare(CollationKey[] names, IStanding[] standings, int a, int b) {
+		IStanding sa = standings[a];
+		IStanding sb = standings[b];
+		if (sa.getNumSolved() != sb.getNumSolved())
+			return Integer.compare(sb.getNumSolved(), sa.getNumSolved());
+		if (sa.getTime() != sb.getTime())
+			return Integer.compare(sa.getTime(), sb.getTime());
+		if (sa.getLastSolutionTime() != sb.getLastSolutionTime())
+			return Integer.compare(sa.getLastSolutionTime(), sb.getLastSolutionTime());
+		return names[a].compareTo(names[b]);
+	}
+
+	/**
+	 * Sort the teams based on their current standing.
+	 */
+	private static void sort(CollationKey[] names, IStanding[] standings, int[] order) {
+		int numTeams = order.length;
+		Integer[] temp = new Integer[numTeams];
+		for (int i = 0; i < numTeams; i++)
+			temp[i] = order[i];
+
+		Arrays.sort(temp, (a, b) -> compare(names, standings, a, b));
+
+		for (int i = 0; i < numTeams; i++)
+			order[i] = temp[i];
 	}
 
 	/**
@@ -47,6 +47,23 @@ public class Result implements IResult {
 		return status;
 	}
 
+	/**
+	 * Returns a copy of this result that can be modified without changing the original.
+	 *
+	 * @return a copy
+	 */
+	protected Result copy() {
+		Result r = new Result();
+		r.status = status;
+		r.numPending = numPending;
+		r.numJudged = numJudged;
+		r.time = time;
+		r.penalty = penalty;
+		r.pendingPenalty = pendingPenalty;
+		r.isFTS = isFTS;
+		return r;
+	}
+
 	protected void addSubmission(Contest contest, int submissionTime, IJudgementType jt) {
 		if (status == Status.SOLVED)
 			return;
@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -87,6 +88,14 @@ public class Run extends TimedEvent implements IRun {
 			props.put(RUN_TIME, Decimal.format(runTime));
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Run o = (Run) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(judgementId, o.judgementId)
+				&& Objects.equals(judgementTypeId, o.judgementTypeId) && ordinal == o.ordinal
+				&& runTime == o.runTime;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
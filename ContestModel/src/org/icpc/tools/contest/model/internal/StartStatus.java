@@ -1,6 +1,7 @@
 package org.icpc.tools.contest.model.internal;
 
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IStartStatus;
 import org.icpc.tools.contest.model.feed.JSONEncoder;
@@ -70,6 +71,12 @@ public class StartStatus extends ContestObject implements IStartStatus {
 		props.put(STATUS, status);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		StartStatus o = (StartStatus) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(label, o.label) && status == o.status;
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IState;
@@ -131,6 +132,15 @@ public class State extends ContestObject implements IState {
 			props.put(END_OF_UPDATES, Timestamp.format(endOfUpdates));
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		State o = (State) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(started, o.started)
+				&& Objects.equals(ended, o.ended) && Objects.equals(frozen, o.frozen)
+				&& Objects.equals(thawed, o.thawed) && Objects.equals(finalized, o.finalized)
+				&& Objects.equals(endOfUpdates, o.endOfUpdates);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		if (started != null)
@@ -3,6 +3,7 @@ package org.icpc.tools.contest.model.internal;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -139,6 +140,15 @@ public class Submission extends TimedEvent implements ISubmission {
 		props.put(REACTION, reaction);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Submission o = (Submission) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(teamId, o.teamId)
+				&& Objects.equals(problemId, o.problemId) && Objects.equals(languageId, o.languageId)
+				&& Objects.equals(entryPoint, o.entryPoint) && Objects.equals(files, o.files)
+				&& Objects.equals(reaction, o.reaction);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
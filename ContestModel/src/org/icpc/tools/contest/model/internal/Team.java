@@ -3,8 +3,10 @@ package org.icpc.tools.contest.model.internal;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -367,6 +369,20 @@ public class Team extends ContestObject implements ITeam {
 		}
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		Team o = (Team) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(name, o.name)
+				&& Objects.equals(displayName, o.displayName) && Objects.equals(icpcId, o.icpcId)
+				&& Arrays.equals(groupIds, o.groupIds) && Objects.equals(organizationId, o.organizationId)
+				&& Double.compare(x, o.x) == 0 && Double.compare(y, o.y) == 0
+				&& Double.compare(rotation, o.rotation) == 0 && Objects.equals(photo, o.photo)
+				&& Objects.equals(video, o.video) && Objects.equals(backup, o.backup)
+				&& Objects.equals(keylog, o.keylog) && Objects.equals(tooldata, o.tooldata)
+				&& Objects.equals(desktop, o.desktop) && Objects.equals(webcam, o.webcam)
+				&& Objects.equals(audio, o.audio);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
@@ -5,6 +5,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IContestObject;
@@ -148,6 +149,15 @@ public class TeamMember extends ContestObject implements ITeamMember {
 		props.put(PHOTO, photo);
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		TeamMember o = (TeamMember) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(icpcId, o.icpcId)
+				&& Objects.equals(firstName, o.firstName) && Objects.equals(lastName, o.lastName)
+				&& Objects.equals(sex, o.sex) && Objects.equals(teamId, o.teamId)
+				&& Objects.equals(role, o.role) && Objects.equals(photo, o.photo);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
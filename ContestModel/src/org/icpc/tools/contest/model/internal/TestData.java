@@ -2,6 +2,7 @@ package org.icpc.tools.contest.model.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.ITestData;
@@ -61,6 +62,13 @@ public class TestData extends ContestObject implements ITestData {
 			props.put(SAMPLE, isSample.booleanValue());
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		TestData o = (TestData) obj;
+		return super.hasSamePropertiesImpl(obj) && Objects.equals(problemId, o.problemId)
+				&& ordinal == o.ordinal && Objects.equals(isSample, o.isSample);
+	}
+
 	@Override
 	public void writeBody(JSONEncoder je) {
 		je.encode(ID, id);
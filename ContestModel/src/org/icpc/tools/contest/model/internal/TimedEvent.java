@@ -53,6 +53,13 @@ public abstract class TimedEvent extends ContestObject {
 			props.put(TIME, Timestamp.format(time));
 	}
 
+	@Override
+	protected boolean hasSamePropertiesImpl(ContestObject obj) {
+		// time is ignored, since it changes whenever an event is resent
+		TimedEvent o = (TimedEvent) obj;
+		return super.hasSamePropertiesImpl(obj) && contestTime == o.contestTime;
+	}
+
 	protected void encodeTimeProperties(JSONEncoder je) {
 		try {
 			if (contestTime != Integer.MIN_VALUE)
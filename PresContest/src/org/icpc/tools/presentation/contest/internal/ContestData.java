@@ -4,9 +4,11 @@ import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.feed.ContestSource;
 import org.icpc.tools.contest.model.internal.BufferedContest;
 import org.icpc.tools.contest.model.internal.Contest;
+import org.icpc.tools.contest.model.internal.ContestStatistics;
 
 public class ContestData {
 	private static IContest contest;
+	private static ContestStatistics statistics;
 
 	public static IContest getContest() {
 		if (contest != null)
@@ -19,6 +21,24 @@ public class ContestData {
 		return contest;
 	}
 
+	/**
+	 * Returns statistics for the contest, shared by all presentations and kept up to date as the
+	 * contest changes.
+	 *
+	 * @return the contest statistics
+	 */
+	public static ContestStatistics getStatistics() {
+		if (statistics != null)
+			return statistics;
+
+		IContest c = getContest();
+		synchronized (ContestData.class) {
+			if (statistics == null)
+				statistics = new ContestStatistics(c);
+		}
+		return statistics;
+	}
+
 	private static void init() {
 		ContestSource source = ContestSource.getInstance();
 		BufferedContest bufferedContest = new BufferedContest();
@@ -16,6 +16,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.icpc.tools.client.core.BasicClient;
+import org.icpc.tools.client.core.IConnectionListener;
 import org.icpc.tools.client.core.IPropertyListener;
 import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.feed.JSONEncoder;
@@ -40,9 +41,13 @@ public class PresentationClient extends BasicClient {
 
 	protected long graphicsChecksum;
 	protected int[] graphicsInfo;
-	protected boolean sendingInfoUpdate;
+	protected volatile boolean sendingInfoUpdate;
 	protected boolean sendingInfo;
 
+	// the last thumbnail and info sent, to skip updates when nothing has changed
+	protected Integer lastThumbnailHash;
+	protected String lastInfoUpdate;
+
 	protected PresentationClient(RESTContestSource source, String clientId, int uid, String role) {
 		this(source, clientId, uid, role, "presentation");
 	}
@@ -86,6 +91,14 @@ public class PresentationClient extends BasicClient {
 				handleProperty(key, value);
 			}
 		});
+		addListener(new IConnectionListener() {
+			@Override
+			public void connectionStateChanged(boolean connected) {
+				// the server doesn't remember anything across connections
+				lastThumbnailHash = null;
+				lastInfoUpdate = null;
+			}
+		});
 	}
 
 	protected void handleProperty(String key, String value) {
@@ -324,22 +337,52 @@ public class PresentationClient extends BasicClient {
 		}
 	}
 
+	/**
+	 * Send an info update with a thumbnail. Called from the window's thumbnail thread, so the image
+	 * is encoded on the calling thread and only the send is done by the executor. If the thumbnail
+	 * hasn't changed since the last one it isn't sent again, and if nothing else has changed either
+	 * (e.g. an idle screen) nothing is sent at all.
+	 */
 	public void writeInfoUpdate(final BufferedImage image) {
 		// last thread still going, try next time
 		if (sendingInfoUpdate)
 			return;
 
+		final String presentation = window.getPresentationName();
+		final int fps = window.getFPS();
+		final String info = presentation + "/" + fps;
+		final int hash = hashImage(image);
+		final boolean sameImage = lastThumbnailHash != null && lastThumbnailHash == hash;
+		if (sameImage && info.equals(lastInfoUpdate))
+			return;
+
+		byte[] b = null;
+		if (!sameImage) {
+			try {
+				b = imageToBytes(image);
+			} catch (Exception e) {
+				Trace.trace(Trace.ERROR, "Error encoding thumbnail", e);
+				return;
+			}
+		}
+		final byte[] b2 = b;
+
 		sendingInfoUpdate = true;
 
 		execute(new Runnable() {
 			@Override
 			public void run() {
 				try {
-					sendInfo(je -> {
-						je.encode(PRESENTATION, window.getPresentationName());
-						je.encode(FPS, window.getFPS());
-						encodeImage(je, imageToBytes(image));
-					});
+					AddAttrs attrs = je -> {
+						je.encode(PRESENTATION, presentation);
+						je.encode(FPS, fps);
+					};
+					if (b2 == null)
+						sendInfo(attrs);
+					else
+						sendInfo(attrs, b2);
+					lastThumbnailHash = hash;
+					lastInfoUpdate = info;
 				} catch (Exception e) {
 					Trace.trace(Trace.ERROR, "Error sending status", e);
 				}
@@ -11,15 +11,18 @@ import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.ContestUtil;
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IProblem;
-import org.icpc.tools.contest.model.IResult;
 import org.icpc.tools.contest.model.ITeam;
-import org.icpc.tools.contest.model.Status;
+import org.icpc.tools.contest.model.internal.ContestStatistics;
 
 public class StatisticsGenerator {
 	private Statistic[] stats = new Statistic[0];
 	private final Queue<String> recentStack = new LinkedList<>();
 	private static final Random rand = new Random(System.currentTimeMillis());
 
+	// statistics for a contest other than the shared one
+	private ContestStatistics statistics;
+	private IContest statisticsContest;
+
 	protected static final NumberFormat percentFormat = NumberFormat.getPercentInstance();
 	protected static final NumberFormat decimalFormat = NumberFormat.getNumberInstance();
 
@@ -47,10 +50,12 @@ public class StatisticsGenerator {
 		if (contest == null)
 			return;
 
-		int totalSubmissions = 0;
-		int totalSolved = 0;
-		int totalTime = 0;
-		int teamsSolved = 0;
+		ContestStatistics cs = getStatistics(contest);
+		int totalSubmissions = cs.getNumAttempts();
+		int totalSolved = cs.getNumSolved();
+		long totalTime = cs.getTotalSolvedTime();
+		int teamsSolved = cs.getNumTeamsSolved();
+		int totalPending = cs.getNumPending();
 
 		int numTeams = contest.getNumTeams();
 		IProblem[] problems = contest.getProblems();
@@ -60,43 +65,27 @@ public class StatisticsGenerator {
 		int[] fastestProblemSolved = new int[numProblems];
 		ITeam[] fastestProblemSolvedTeam = new ITeam[numProblems];
 
-		for (int j = 0; j < numProblems; j++)
-			fastestProblemSolved[j] = -1;
-
 		int mostAttempts = -1;
 		int mostAttemptsProblem = -1;
 		int lastSolvedTime = -1;
 		int lastSolvedProblem = -1;
-		int totalPending = 0;
-
-		for (ITeam team : contest.getTeams()) {
-			boolean b = false;
-			for (int j = 0; j < numProblems; j++) {
-				IResult r = contest.getResult(team, j);
-				totalSubmissions += r.getNumSubmissions();
-				if (r.getStatus() == Status.SOLVED) {
-					totalSolved++;
-					b = true;
-					totalProblemSolved[j]++;
-					if (fastestProblemSolved[j] == -1 || r.getContestTime() < fastestProblemSolved[j]) {
-						fastestProblemSolved[j] = r.getContestTime();
-						fastestProblemSolvedTeam[j] = team;
-					}
-					if (r.getNumSubmissions() > mostAttempts) {
-						mostAttempts = r.getNumSubmissions();
-						mostAttemptsProblem = j;
-					}
-					if (r.getContestTime() > lastSolvedTime) {
-						lastSolvedTime = r.getContestTime();
-						lastSolvedProblem = j;
-					}
-					totalTime += r.getContestTime();
-				}
 
-				totalPending += r.getNumPending();
+		for (int j = 0; j < numProblems; j++) {
+			totalProblemSolved[j] = cs.getNumSolved(j);
+			fastestProblemSolved[j] = cs.getFastestSolution(j);
+			if (fastestProblemSolved[j] >= 0) {
+				fastestProblemSolvedTeam[j] = contest.getTeamById(cs.getFastestTeam(j));
+				if (fastestProblemSolvedTeam[j] == null)
+					fastestProblemSolved[j] = -1;
+			}
+			if (cs.getMostAttempts(j) > mostAttempts) {
+				mostAttempts = cs.getMostAttempts(j);
+				mostAttemptsProblem = j;
+			}
+			if (cs.getLastSolution(j) > lastSolvedTime) {
+				lastSolvedTime = cs.getLastSolution(j);
+				lastSolvedProblem = j;
 			}
-			if (b)
-				teamsSolved++;
 		}
 
 		List<Statistic> list = new ArrayList<>();
@@ -214,6 +203,19 @@ public class StatisticsGenerator {
 		}
 	}
 
+	private ContestStatistics getStatistics(IContest contest) {
+		if (contest == ContestData.getContest())
+			return ContestData.getStatistics();
+
+		if (statistics == null || statisticsContest != contest) {
+			if (statistics != null)
+				statistics.dispose();
+			statistics = new ContestStatistics(contest);
+			statisticsContest = contest;
+		}
+		return statistics;
+	}
+
 	public String getStatistic() {
 		synchronized (stats) {
 			if (stats.length < 1)
@@ -9,10 +9,10 @@ import java.util.List;
 
 import org.icpc.tools.contest.Trace;
 import org.icpc.tools.contest.model.IContest;
-import org.icpc.tools.contest.model.ISubmission;
 import org.icpc.tools.contest.model.feed.ContestSource;
 import org.icpc.tools.contest.model.feed.NDJSONFeedParser;
 import org.icpc.tools.contest.model.internal.Contest;
+import org.icpc.tools.contest.model.internal.RankHistory;
 import org.icpc.tools.presentation.contest.internal.ContestData;
 import org.icpc.tools.presentation.contest.internal.ICPCFont;
 import org.icpc.tools.presentation.core.chart.AbstractChartPresentation;
@@ -28,6 +28,7 @@ public class HistoricalComparisonChart extends AbstractChartPresentation {
 	protected int numValues;
 	protected List<IContest> pastContests;
 	protected List<Series> pastData = new ArrayList<>();
+	protected RankHistory history;
 
 	public HistoricalComparisonChart() {
 		super(Type.LINE, "Historical Comparison", "# of solutions");
@@ -77,6 +78,16 @@ public class HistoricalComparisonChart extends AbstractChartPresentation {
 		numValues = maxTime / 60000 / MIN;
 		if (numValues < 1)
 			numValues = 1;
+
+		if (contest != null)
+			history = new RankHistory(contest, MIN * 60000);
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		if (history != null)
+			history.dispose();
 	}
 
 	@Override
@@ -91,23 +102,12 @@ public class HistoricalComparisonChart extends AbstractChartPresentation {
 		for (int i = 0; i < size; i++) {
 			series[i] = new Series(numValues, COLORS[i]);
 
-			IContest contest2 = pastContests.get(i);
+			// value j is the number of problems solved before the end of step j
+			RankHistory pastHistory = new RankHistory(pastContests.get(i), MIN * 60000);
 			int[] solns = new int[numValues];
-			int[] total = new int[numValues];
-			ISubmission[] submissions = contest2.getSubmissions();
-			for (ISubmission s : submissions) {
-				int time = s.getContestTime();
-				if (time <= maxTime) {
-					int rt = (int) Math.max(0, time / 1000L / 60 / MIN);
-					rt = Math.min(rt, numValues - 1);
-					if (contest2.isSolved(s))
-						solns[rt]++;
-					total[rt]++;
-				}
-			}
-
-			for (int j = 1; j < numValues; j++)
-				solns[j] += solns[j - 1];
+			for (int j = 0; j < numValues; j++)
+				solns[j] = pastHistory.getNumSolved(j + 1);
+			pastHistory.dispose();
 
 			series[i].setValues(solns);
 			series[i].setTitle("ICPC " + (2013 + i));
@@ -122,32 +122,18 @@ public class HistoricalComparisonChart extends AbstractChartPresentation {
 
 	@Override
 	protected void updateData() {
-		if (contest == null)
+		if (history == null)
 			return;
 
+		int max = Math.min(numValues, contest.getContestTimeOfLastEvent() / 60000 / MIN + 1);
 		int[] solns = new int[numValues];
-		for (int i = 0; i < numValues; i++)
-			solns[i] = NO_DATA;
-
-		int max = 0;
-		int[] total = new int[numValues];
-		ISubmission[] submissions = contest.getSubmissions();
-		for (ISubmission s : submissions) {
-			int time = s.getContestTime();
-			if (time < maxTime) {
-				int rt = (int) Math.max(0, time / 1000L / 60 / MIN);
-				rt = Math.min(rt, numValues - 1);
-				if (contest.isSolved(s))
-					solns[rt]++;
-				total[rt]++;
-				max = Math.max(rt, max);
-			}
+		for (int j = 0; j < numValues; j++) {
+			if (j < max)
+				solns[j] = history.getNumSolved(j + 1);
+			else
+				solns[j] = NO_DATA;
 		}
 
-		for (int j = 1; j < max; j++)
-			solns[j] += solns[j - 1];
-
 		getSeries()[getSeries().length - 1].setValues(solns);
-
 	}
 }
\ No newline at end of file
@@ -4,7 +4,7 @@ import java.awt.Color;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.ILanguage;
-import org.icpc.tools.contest.model.ISubmission;
+import org.icpc.tools.contest.model.internal.ContestStatistics;
 import org.icpc.tools.presentation.contest.internal.ContestData;
 import org.icpc.tools.presentation.contest.internal.ICPCColors;
 import org.icpc.tools.presentation.contest.internal.ICPCFont;
@@ -62,19 +62,10 @@ public class LanguageSummaryChart extends AbstractChartPresentation {
 		int[] totalAttempts = new int[numLangs];
 		int[] totalSolved = new int[numLangs];
 
-		ISubmission[] submissions = contest.getSubmissions();
-		for (ISubmission submission : submissions) {
-			String langId = submission.getLanguageId();
-			int n = -1;
-			for (int i = 0; i < numLangs; i++)
-				if (langs[i].getId().equals(langId))
-					n = i;
-
-			if (n >= 0) {
-				totalAttempts[n]++;
-				if (contest.isSolved(submission))
-					totalSolved[n]++;
-			}
+		ContestStatistics stats = ContestData.getStatistics();
+		for (int i = 0; i < numLangs; i++) {
+			totalAttempts[i] = stats.getNumLanguageSubmissions(i);
+			totalSolved[i] = stats.getNumLanguageSolutions(i);
 		}
 
 		getSeries()[0].setValues(totalAttempts);
@@ -4,7 +4,7 @@ import java.awt.Color;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IProblem;
-import org.icpc.tools.contest.model.ISubmission;
+import org.icpc.tools.contest.model.internal.ContestStatistics;
 import org.icpc.tools.presentation.contest.internal.ContestData;
 import org.icpc.tools.presentation.contest.internal.ICPCFont;
 import org.icpc.tools.presentation.core.chart.AbstractChartPresentation;
@@ -56,19 +56,10 @@ public class ProblemComparisonChart extends AbstractChartPresentation {
 
 		IProblem[] problems = contest.getProblems();
 		int size = problems.length;
-		int[][] data = new int[size][numMin];
-
-		ISubmission[] submissions = contest.getSubmissions();
-		for (ISubmission s : submissions) {
-			String pId = s.getProblemId();
-			for (int i = 0; i < size; i++) {
-				if (problems[i].getId().equals(pId)) {
-					int rt = (int) Math.max(0, s.getContestTime() / 1000L / 60 / MIN);
-					rt = Math.min(rt, numMin - 1);
-					data[i][rt]++;
-				}
-			}
-		}
+		ContestStatistics stats = ContestData.getStatistics();
+		int[][] data = new int[size][];
+		for (int i = 0; i < size; i++)
+			data[i] = stats.getSubmissionsByTime(i, MIN, numMin);
 
 		for (int i = 0; i < size; i++)
 			getSeries()[i].setValues(data[i]);
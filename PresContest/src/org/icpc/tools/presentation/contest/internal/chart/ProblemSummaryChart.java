@@ -4,9 +4,7 @@ import java.awt.Color;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IProblem;
-import org.icpc.tools.contest.model.IResult;
-import org.icpc.tools.contest.model.ITeam;
-import org.icpc.tools.contest.model.Status;
+import org.icpc.tools.contest.model.internal.ContestStatistics;
 import org.icpc.tools.presentation.contest.internal.ContestData;
 import org.icpc.tools.presentation.contest.internal.ICPCFont;
 import org.icpc.tools.presentation.contest.internal.Utility;
@@ -60,15 +58,12 @@ public class ProblemSummaryChart extends AbstractChartPresentation {
 		if (numProblems == 0)
 			return;
 
+		ContestStatistics stats = ContestData.getStatistics();
 		int[] totalAttempts = new int[numProblems];
 		int[] totalSolved = new int[numProblems];
-		for (ITeam team : contest.getTeams()) {
-			for (int j = 0; j < numProblems; j++) {
-				IResult r = contest.getResult(team, j);
-				totalAttempts[j] += r.getNumSubmissions();
-				if (r.getStatus() == Status.SOLVED)
-					totalSolved[j]++;
-			}
+		for (int j = 0; j < numProblems; j++) {
+			totalAttempts[j] = stats.getNumAttempts(j);
+			totalSolved[j] = stats.getNumSolved(j);
 		}
 
 		getSeries()[0].setValues(totalAttempts);
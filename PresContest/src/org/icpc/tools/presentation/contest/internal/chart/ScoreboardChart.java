@@ -3,9 +3,9 @@ package org.icpc.tools.presentation.contest.internal.chart;
 import java.awt.Color;
 
 import org.icpc.tools.contest.model.IContest;
+import org.icpc.tools.contest.model.IStanding;
 import org.icpc.tools.contest.model.ITeam;
-import org.icpc.tools.contest.model.TimeFilter;
-import org.icpc.tools.contest.model.internal.Contest;
+import org.icpc.tools.contest.model.internal.RankHistory;
 import org.icpc.tools.presentation.contest.internal.ContestData;
 import org.icpc.tools.presentation.contest.internal.ICPCFont;
 import org.icpc.tools.presentation.core.chart.AbstractChartPresentation;
@@ -18,6 +18,8 @@ public class ScoreboardChart extends AbstractChartPresentation {
 
 	protected IContest contest = ContestData.getContest();
 	protected int numValues;
+	protected RankHistory history;
+	protected ITeam[] chartTeams;
 
 	private final Color[] COLORS = new Color[] { Color.RED, Color.GREEN, Color.BLUE, Color.CYAN, Color.YELLOW,
 			Color.LIGHT_GRAY, Color.ORANGE, Color.PINK };
@@ -28,6 +30,20 @@ public class ScoreboardChart extends AbstractChartPresentation {
 		setFont(ICPCFont.getMasterFont());
 	}
 
+	@Override
+	public void init() {
+		super.init();
+		if (contest != null)
+			history = new RankHistory(contest, MIN_PER_STEP * MS_PER_MIN);
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		if (history != null)
+			history.dispose();
+	}
+
 	@Override
 	protected void setupChart() {
 		if (contest == null || contest.getNumTeams() < NUM_TEAMS)
@@ -44,38 +60,31 @@ public class ScoreboardChart extends AbstractChartPresentation {
 			ser[i].setLinePoint(null);
 		}
 		setSeries(ser);
-		setData();
+
+		// pick the current top X teams
+		ITeam[] teams = contest.getOrderedTeams();
+		chartTeams = new ITeam[NUM_TEAMS];
+		for (int i = 0; i < NUM_TEAMS; i++) {
+			chartTeams[i] = teams[i];
+			ser[i].setTitle(teams[i].getActualDisplayName());
+		}
 	}
 
 	@Override
 	protected void updateData() {
-		// do nothing
-	}
-
-	private void setData() {
-		int[][] teamData = new int[NUM_TEAMS][numValues];
-		String[] tIds = new String[NUM_TEAMS];
-
-		ITeam[] teams = contest.getOrderedTeams();
-
-		// pick the current top X teams
-		for (int i = 0; i < NUM_TEAMS; i++)
-			tIds[i] = teams[i].getId();
-
-		for (int i = 0; i < numValues; i++) {
-			IContest c = ((Contest) contest).clone(new TimeFilter(contest, i * MIN_PER_STEP * 60000000));
+		if (chartTeams == null || history == null)
+			return;
 
-			for (int j = 0; j < NUM_TEAMS; j++) {
-				ITeam t = c.getTeamById(tIds[j]);
-				teamData[j][i] = teams.length - c.getOrderOf(t);
-				if (c.getStanding(t).getNumSolved() == 0)
-					teamData[j][i] = 0;
+		// the rank history is only recalculated from the first step that changed
+		int numTeams = contest.getOrderedTeams().length;
+		for (int j = 0; j < NUM_TEAMS; j++) {
+			int[] teamData = new int[numValues];
+			for (int i = 0; i < numValues; i++) {
+				IStanding st = history.getStanding(chartTeams[j], i);
+				if (st != null && st.getNumSolved() > 0)
+					teamData[i] = numTeams - history.getOrderOf(chartTeams[j], i);
 			}
-		}
-
-		for (int i = 0; i < NUM_TEAMS; i++) {
-			getSeries()[i].setValues(teamData[i]);
-			getSeries()[i].setTitle(teams[i].getActualDisplayName());
+			getSeries()[j].setValues(teamData);
 		}
 	}
 }
\ No newline at end of file
@@ -1,8 +1,8 @@
 package org.icpc.tools.presentation.contest.internal.chart;
 
 import org.icpc.tools.contest.model.IContest;
-import org.icpc.tools.contest.model.ISubmission;
 import org.icpc.tools.contest.model.Status;
+import org.icpc.tools.contest.model.internal.ContestStatistics;
 import org.icpc.tools.presentation.contest.internal.ContestData;
 import org.icpc.tools.presentation.contest.internal.ICPCColors;
 import org.icpc.tools.presentation.contest.internal.ICPCFont;
@@ -54,21 +54,10 @@ public class TotalProblemsChart extends AbstractChartPresentation {
 		if (contest == null)
 			return;
 
-		int[] solns = new int[numValues];
-		int[] fails = new int[numValues];
-		int[] pends = new int[numValues];
-		ISubmission[] submissions = contest.getSubmissions();
-		for (ISubmission s : submissions) {
-			int rt = (int) Math.max(0, s.getContestTime() / 1000L / 60 / MIN);
-			rt = Math.min(rt, numValues - 1);
-			Status status = contest.getStatus(s);
-			if (status == Status.SOLVED)
-				solns[rt]++;
-			else if (status == Status.FAILED)
-				fails[rt]++;
-			else
-				pends[rt]++;
-		}
+		ContestStatistics stats = ContestData.getStatistics();
+		int[] solns = stats.getSubmissionsByTime(Status.SOLVED, MIN, numValues);
+		int[] fails = stats.getSubmissionsByTime(Status.FAILED, MIN, numValues);
+		int[] pends = stats.getSubmissionsByTime(Status.SUBMITTED, MIN, numValues);
 
 		getSeries()[0].setValues(fails); // NPE
 		getSeries()[1].setValues(pends);
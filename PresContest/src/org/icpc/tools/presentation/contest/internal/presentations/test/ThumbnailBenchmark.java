@@ -0,0 +1,115 @@
+package org.icpc.tools.presentation.contest.internal.presentations.test;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import javax.imageio.ImageIO;
+
+import org.icpc.tools.contest.model.feed.DiskContestSource;
+import org.icpc.tools.contest.model.internal.Contest;
+import org.icpc.tools.presentation.contest.internal.scoreboard.ScoreboardPresentation;
+
+/**
+ * Benchmark for the cost of thumbnails: paints the scoreboard for a generated contest, and reports
+ * how long it takes to capture a thumbnail (rendering the scaled scene, on the animation thread)
+ * and to encode it (JPEG and Base64, on the thumbnail thread), compared to a normal frame.
+ *
+ * Arguments: [teams] [submissions] [thumbnails], default 130 teams, 2000 submissions, and 50
+ * thumbnails.
+ */
+public class ThumbnailBenchmark {
+	private static final int WIDTH = 1920;
+	private static final int HEIGHT = 1080;
+	private static final int THUMBNAIL_HEIGHT = 180;
+
+	public static void main(String[] args) throws IOException {
+		int numTeams = args.length > 0 ? Integer.parseInt(args[0]) : 130;
+		int numSubmissions = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int numThumbnails = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+		// presentations load the default contest when they're created, so use an empty one
+		new DiskContestSource("thumbnail-benchmark");
+		Contest contest = TimelineBenchmark.createContest(numTeams, numSubmissions);
+
+		ScoreboardPresentation pres = new ScoreboardPresentation();
+		pres.setContest(contest);
+		pres.setSize(new Dimension(WIDTH, HEIGHT));
+		pres.init();
+		pres.setTimeMs(System.currentTimeMillis());
+
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+		// warm up
+		for (int i = 0; i < 10; i++) {
+			paintFrame(pres, image);
+			encode(capture(pres));
+		}
+
+		long frameNs = 0;
+		long captureNs = 0;
+		long encodeNs = 0;
+		for (int i = 0; i < numThumbnails; i++) {
+			long time = System.nanoTime();
+			paintFrame(pres, image);
+			long time2 = System.nanoTime();
+			BufferedImage thumbnail = capture(pres);
+			long time3 = System.nanoTime();
+			encode(thumbnail);
+			long time4 = System.nanoTime();
+
+			frameNs += time2 - time;
+			captureNs += time3 - time2;
+			encodeNs += time4 - time3;
+		}
+
+		double frame = frameNs / 1_000_000.0 / numThumbnails;
+		double capture = captureNs / 1_000_000.0 / numThumbnails;
+		double encode = encodeNs / 1_000_000.0 / numThumbnails;
+		System.out.println("Frame: " + String.format("%.1f", frame) + "ms");
+		System.out.println("Thumbnail capture (animation thread): " + String.format("%.1f", capture) + "ms");
+		System.out.println("Thumbnail encode (thumbnail thread): " + String.format("%.1f", encode) + "ms");
+	}
+
+	private static void paintFrame(ScoreboardPresentation pres, BufferedImage image) {
+		pres.setTimeMs(pres.getTimeMs() + 16);
+		Graphics2D g = image.createGraphics();
+		pres.paint(g);
+		g.dispose();
+	}
+
+	/**
+	 * Render a thumbnail the same way the presentation window does.
+	 */
+	private static BufferedImage capture(ScoreboardPresentation pres) {
+		float scale = THUMBNAIL_HEIGHT / (float) HEIGHT;
+		BufferedImage image = new BufferedImage((int) (WIDTH * scale), (int) (HEIGHT * scale), Transparency.OPAQUE);
+		Graphics2D g = (Graphics2D) image.getGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.scale(scale, scale);
+		pres.paint(g);
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Encode a thumbnail the same way the presentation client does.
+	 */
+	private static String encode(BufferedImage image) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", bout);
+		return Base64.getEncoder().encodeToString(bout.toByteArray());
+	}
+
+	// 130 teams, 2000 submissions, 1920x1080 scoreboard, 1 cpu: frame 4.0-6.4ms, thumbnail capture
+	// 2.3-3.5ms, encode 5.0-6.5ms. Encoding was never on the animation thread (the client encoded on
+	// its executor), so a thumbnail frame still costs a frame plus the capture. Rendering the frame
+	// off-screen once and scaling the copy in the background is slower on the animation thread:
+	// 4.9-5.7ms to render off-screen plus 3.1-3.2ms to copy it to the screen
+}
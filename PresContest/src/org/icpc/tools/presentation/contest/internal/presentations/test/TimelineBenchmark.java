@@ -0,0 +1,142 @@
+package org.icpc.tools.presentation.contest.internal.presentations.test;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.icpc.tools.contest.model.feed.DiskContestSource;
+import org.icpc.tools.contest.model.feed.RelativeTime;
+import org.icpc.tools.contest.model.feed.Timestamp;
+import org.icpc.tools.contest.model.internal.Contest;
+import org.icpc.tools.contest.model.internal.Info;
+import org.icpc.tools.contest.model.internal.Judgement;
+import org.icpc.tools.contest.model.internal.JudgementType;
+import org.icpc.tools.contest.model.internal.Problem;
+import org.icpc.tools.contest.model.internal.State;
+import org.icpc.tools.contest.model.internal.Submission;
+import org.icpc.tools.contest.model.internal.Team;
+import org.icpc.tools.presentation.contest.internal.scoreboard.TimelinePresentation;
+
+/**
+ * Frame rate benchmark for the timeline presentation: paints a generated contest with a large
+ * number of submissions into an offscreen image and reports the frames per second.
+ *
+ * Arguments: [teams] [submissions] [frames], default 130 teams, 20000 submissions, and 100
+ * frames.
+ */
+public class TimelineBenchmark {
+	private static final int DURATION = 5 * 60 * 60 * 1000;
+	private static final int NUM_PROBLEMS = 12;
+
+	public static void main(String[] args) {
+		int numTeams = args.length > 0 ? Integer.parseInt(args[0]) : 130;
+		int numSubmissions = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int numFrames = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+		// presentations load the default contest when they're created, so use an empty one
+		new DiskContestSource("timeline-benchmark");
+		Contest contest = createContest(numTeams, numSubmissions);
+
+		TimelinePresentation pres = new TimelinePresentation();
+		pres.setContest(contest);
+		pres.setSize(new Dimension(1920, 1080));
+		pres.init();
+
+		BufferedImage image = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB);
+
+		pres.setTimeMs(System.currentTimeMillis());
+
+		// warm up
+		paint(pres, image, 10);
+
+		long time = System.nanoTime();
+		paint(pres, image, numFrames);
+		time = System.nanoTime() - time;
+
+		double ms = time / 1_000_000.0 / numFrames;
+		System.out.println(numTeams + " teams, " + numSubmissions + " submissions: " + String.format("%.1f", ms)
+				+ "ms per frame (" + String.format("%.1f", 1000.0 / ms) + " fps)");
+	}
+
+	private static void paint(TimelinePresentation pres, BufferedImage image, int frames) {
+		for (int i = 0; i < frames; i++) {
+			pres.setTimeMs(pres.getTimeMs() + 16);
+			Graphics2D g = image.createGraphics();
+			pres.paint(g);
+			g.dispose();
+		}
+	}
+
+	protected static Contest createContest(int numTeams, int numSubmissions) {
+		Contest contest = new Contest();
+		Random r = new Random(42);
+		long start = System.currentTimeMillis() - DURATION / 2;
+
+		Info info = new Info();
+		info.add("id", "benchmark");
+		info.add("name", "Benchmark");
+		info.add("duration", RelativeTime.format(DURATION));
+		info.add("scoreboard_freeze_duration", RelativeTime.format(DURATION / 5));
+		info.add("start_time", Timestamp.format(start));
+		contest.add(info);
+
+		State state = new State();
+		state.add("started", Timestamp.format(start));
+		contest.add(state);
+
+		String[] types = new String[] { "AC", "WA", "TLE" };
+		for (String type : types) {
+			JudgementType jt = new JudgementType();
+			jt.add("id", type);
+			jt.add("name", type);
+			jt.add("solved", "AC".equals(type) + "");
+			jt.add("penalty", (!"AC".equals(type)) + "");
+			contest.add(jt);
+		}
+
+		for (int i = 0; i < NUM_PROBLEMS; i++) {
+			Problem p = new Problem();
+			p.add("id", "p" + i);
+			p.add("label", (char) ('A' + i) + "");
+			p.add("ordinal", i + "");
+			contest.add(p);
+		}
+
+		for (int i = 0; i < numTeams; i++) {
+			Team t = new Team();
+			t.add("id", "t" + i);
+			t.add("name", "Team " + i);
+			contest.add(t);
+		}
+
+		// submissions spread over the first half of the contest, in time order
+		int[] times = new int[numSubmissions];
+		for (int i = 0; i < numSubmissions; i++)
+			times[i] = r.nextInt(DURATION / 2);
+		Arrays.sort(times);
+
+		for (int i = 0; i < numSubmissions; i++) {
+			Submission s = new Submission();
+			s.add("id", "s" + i);
+			s.add("team_id", "t" + r.nextInt(numTeams));
+			s.add("problem_id", "p" + r.nextInt(NUM_PROBLEMS));
+			s.add("contest_time", RelativeTime.format(times[i]));
+			s.add("time", Timestamp.format(start + times[i]));
+			contest.add(s);
+
+			Judgement j = new Judgement();
+			j.add("id", "j" + i);
+			j.add("submission_id", "s" + i);
+			j.add("judgement_type_id", types[r.nextInt(types.length)]);
+			j.add("start_contest_time", RelativeTime.format(times[i]));
+			j.add("end_contest_time", RelativeTime.format(times[i] + 1000));
+			contest.add(j);
+		}
+		return contest;
+	}
+
+	// 130 teams, 20000 submissions, 1920x1080, 1 cpu: 750.6ms per frame (1.3 fps) searching all
+	// submissions for each team every frame, 13.3-15.9ms (63-75 fps) with the cached per-team cubes
+}
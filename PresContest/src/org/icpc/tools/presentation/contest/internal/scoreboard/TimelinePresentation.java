@@ -11,6 +11,10 @@ import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.icpc.tools.contest.model.IContest;
 import org.icpc.tools.contest.model.IProblem;
@@ -34,6 +38,22 @@ public class TimelinePresentation extends AbstractScrollingScoreboardPresentatio
 	protected int start;
 	protected double scale;
 
+	/**
+	 * A submission cube, and how far it is shifted up or down to avoid overlapping its neighbours.
+	 */
+	private static class Cube {
+		protected ISubmission submission;
+		protected String label;
+		protected int dy;
+	}
+
+	// submission cubes by team id, in time order, and what they were computed from
+	private Map<String, Cube[]> cubes;
+	private ISubmission[] cubeSubmissions;
+	private IProblem[] cubeProblems;
+	private double cubeScale;
+	private int cubeSize;
+
 	@Override
 	protected String getTitle() {
 		return "Current Standings";
@@ -135,7 +155,7 @@ public class TimelinePresentation extends AbstractScrollingScoreboardPresentatio
 		g.drawLine(ct, 0, ct, (int) (numTeams * rowHeight));
 		g.setStroke(oldStroke);
 
-		int offset = cubeHeight * 3 / 16;
+		updateCubes(contest);
 
 		// draw teams - fill in each team's bar (rectangle) with team and problem info
 		// in the manner defined by the parent class's drawTeamAndProblemGrid() method
@@ -154,39 +174,80 @@ public class TimelinePresentation extends AbstractScrollingScoreboardPresentatio
 				g4.setFont(cubeFont);
 				g4.translate(0, (int) (rowHeight * 3 / 4f) - 1);
 
-				int up = 1;
-
-				ISubmission[] submissions = contest.getSubmissions();
-
-				for (ISubmission submission : submissions) {
-					if (submission.getTeamId().equals(team.getId())) {
-						boolean closeToNeighbor = false;
-						for (ISubmission s : submissions) {
-							if (submission != s && s.getTeamId().equals(team.getId())
-									&& Math.abs(submission.getContestTime() - s.getContestTime()) * scale < cubeHeight)
-								closeToNeighbor = true;
-						}
+				Cube[] teamCubes = cubes.get(team.getId());
+				if (teamCubes != null) {
+					for (Cube c : teamCubes) {
+						double xx = getX(c.submission.getContestTime()) - cubeHeight / 2.0;
+						ShadedRectangle.drawRoundRect(g4, (int) xx, -cubeHeight / 2 + c.dy, cubeHeight, cubeHeight,
+								contest, c.submission, getTimeMs(), c.label);
+					}
+				}
 
-						double xx = getX(submission.getContestTime()) - cubeHeight / 2.0;
+				g4.dispose();
+			}
+		}
+	}
 
-						if (closeToNeighbor)
-							g4.translate(0, -offset * up);
+	/**
+	 * Group the submissions by team in time order, and work out which ones are close enough to a
+	 * neighbour to be shifted up or down. This only changes when submissions or problems are added
+	 * or the size changes, so it isn't done on every frame.
+	 */
+	private void updateCubes(IContest contest) {
+		ISubmission[] submissions = contest.getSubmissions();
+		IProblem[] problems = contest.getProblems();
+		if (cubes != null && submissions == cubeSubmissions && problems == cubeProblems && scale == cubeScale
+				&& cubeHeight == cubeSize)
+			return;
 
-						IProblem p = contest.getProblemById(submission.getProblemId());
-						ShadedRectangle.drawRoundRect(g4, (int) xx, -cubeHeight / 2, cubeHeight, cubeHeight, contest,
-								submission, getTimeMs(), p.getLabel());
+		Map<String, List<ISubmission>> map = new HashMap<>();
+		for (ISubmission s : submissions) {
+			List<ISubmission> list = map.get(s.getTeamId());
+			if (list == null) {
+				list = new ArrayList<>();
+				map.put(s.getTeamId(), list);
+			}
+			list.add(s);
+		}
 
-						if (closeToNeighbor) {
-							g4.translate(0, offset * up);
-							up = -up;
-						} else
-							up = 1;
-					}
+		int offset = cubeHeight * 3 / 16;
+		Map<String, Cube[]> newCubes = new HashMap<>();
+		for (String teamId : map.keySet()) {
+			List<ISubmission> list = map.get(teamId);
+			list.sort((s1, s2) -> Integer.compare(s1.getContestTime(), s2.getContestTime()));
+
+			int n = list.size();
+			List<Cube> teamCubes = new ArrayList<>(n);
+			int up = 1;
+			for (int i = 0; i < n; i++) {
+				ISubmission submission = list.get(i);
+				int time = submission.getContestTime();
+				boolean closeToNeighbor = (i > 0 && (time - list.get(i - 1).getContestTime()) * scale < cubeHeight)
+						|| (i < n - 1 && (list.get(i + 1).getContestTime() - time) * scale < cubeHeight);
+
+				IProblem p = contest.getProblemById(submission.getProblemId());
+				if (p != null) {
+					Cube c = new Cube();
+					c.submission = submission;
+					c.label = p.getLabel();
+					if (closeToNeighbor)
+						c.dy = -offset * up;
+					teamCubes.add(c);
 				}
 
-				g4.dispose();
+				if (closeToNeighbor)
+					up = -up;
+				else
+					up = 1;
 			}
+			newCubes.put(teamId, teamCubes.toArray(new Cube[0]));
 		}
+
+		cubes = newCubes;
+		cubeSubmissions = submissions;
+		cubeProblems = problems;
+		cubeScale = scale;
+		cubeSize = cubeHeight;
 	}
 
 	private int getX(int contestTimeMs) {
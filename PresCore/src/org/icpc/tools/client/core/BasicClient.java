@@ -1,12 +1,17 @@
 package org.icpc.tools.client.core;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
@@ -92,6 +97,16 @@ public class BasicClient {
 					}
 				}
 			});
+			session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+				@Override
+				public void onMessage(ByteBuffer message) {
+					try {
+						BasicClient.this.onMessage(message);
+					} catch (IOException e) {
+						Trace.trace(Trace.ERROR, "Error in websocket", e);
+					}
+				}
+			});
 		}
 
 		protected void send(String message) throws IOException {
@@ -101,11 +116,19 @@ public class BasicClient {
 			session.getBasicRemote().sendText(message);
 		}
 
+		protected void send(ByteBuffer message) throws IOException {
+			if (session == null)
+				return;
+
+			session.getBasicRemote().sendBinary(message);
+		}
+
 		@Override
 		public void onClose(Session session2, CloseReason closeReason) {
 			Trace.trace(Trace.USER, name + " disconnected");
 			fireConnectionStateEvent(false);
 			session = null;
+			serverBinary = false;
 			if (closeReason != null && closeReason.getCloseCode() != CloseCodes.NORMAL_CLOSURE) {
 				if (closeReason.getCloseCode() == CloseCodes.UNEXPECTED_CONDITION
 						&& closeReason.getReasonPhrase().startsWith("CDS: ")) {
@@ -162,6 +185,9 @@ public class BasicClient {
 
 	private WSClientEndpoint clientEndpoint;
 
+	// true if the server accepts images in binary frames
+	private boolean serverBinary;
+
 	public BasicClient(RESTContestSource contestSource, String name, int uid, String role, String type) {
 		this.contestSource = contestSource;
 		this.name = name;
@@ -398,7 +424,38 @@ public class BasicClient {
 		});
 	}
 
+	/**
+	 * Send info with an image (thumbnail).
+	 */
+	protected void sendInfo(AddAttrs attr, byte[] image) throws IOException {
+		createJSON(Type.INFO, je -> {
+			je.encode("source", Integer.toHexString(uid));
+			attr.add(je);
+		}, image);
+	}
+
 	protected void createJSON(Type type, AddAttrs attr) throws IOException {
+		sendIt(createJSONString(type, attr));
+	}
+
+	/**
+	 * Send a message with an image. If the server supports it the image is sent as raw bytes in a
+	 * binary frame after the JSON header, otherwise it is Base64 encoded into the JSON.
+	 */
+	protected void createJSON(Type type, AddAttrs attr, byte[] image) throws IOException {
+		if (!serverBinary) {
+			createJSON(type, je -> {
+				if (attr != null)
+					attr.add(je);
+				encodeImage(je, image);
+			});
+			return;
+		}
+
+		sendIt(createJSONString(type, attr), image);
+	}
+
+	private static String createJSONString(Type type, AddAttrs attr) throws IOException {
 		StringWriter sw = new StringWriter();
 		JSONEncoder je = new JSONEncoder(new PrintWriter(sw));
 		je.open();
@@ -406,7 +463,7 @@ public class BasicClient {
 		if (attr != null)
 			attr.add(je);
 		je.close();
-		sendIt(sw.toString());
+		return sw.toString();
 	}
 
 	protected void sendLog(int toUID) throws IOException {
@@ -456,10 +513,36 @@ public class BasicClient {
 	}
 
 	protected static byte[] decodeImage(JsonObject obj) {
+		// images from binary frames are already decoded
+		Object o = obj.get("image");
+		if (o instanceof byte[])
+			return (byte[]) o;
+
 		String imgStr = obj.getString("image");
 		return Base64.getDecoder().decode(imgStr);
 	}
 
+	/**
+	 * Returns a hash of the pixels in an image, to tell if it has changed.
+	 *
+	 * @param image an image
+	 * @return a hash of the pixels
+	 */
+	protected static int hashImage(BufferedImage image) {
+		DataBuffer db = image.getRaster().getDataBuffer();
+		if (db instanceof DataBufferInt && db.getNumBanks() == 1)
+			return Arrays.hashCode(((DataBufferInt) db).getData());
+
+		int w = image.getWidth();
+		int[] row = new int[w];
+		int hash = 1;
+		for (int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, w, 1, row, 0, w);
+			hash = 31 * hash + Arrays.hashCode(row);
+		}
+		return hash;
+	}
+
 	protected static byte[] decodeFile(JsonObject obj) {
 		return Base64.getDecoder().decode(obj.getString("file"));
 	}
@@ -472,8 +555,7 @@ public class BasicClient {
 		createJSON(Type.SNAPSHOT, je -> {
 			je.encode("source", Integer.toHexString(uid));
 			je.encode("target", Integer.toHexString(toUID));
-			encodeImage(je, imageToBytes(image));
-		});
+		}, imageToBytes(image));
 	}
 
 	protected boolean sendIt(String message) throws IOException {
@@ -485,6 +567,25 @@ public class BasicClient {
 		return true;
 	}
 
+	/**
+	 * Send a binary frame: the length of the JSON header, the header, and then the image.
+	 */
+	protected boolean sendIt(String header, byte[] image) throws IOException {
+		if (clientEndpoint == null)
+			return false;
+
+		trace("> " + header + " + " + image.length + " bytes", DEBUG_JSON_PAYLOADS);
+		byte[] h = header.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer bb = ByteBuffer.allocate(4 + h.length + image.length);
+		bb.putInt(h.length);
+		bb.put(h);
+		bb.put(image);
+		// cast so that this links to the Java 8 method when built on newer JDKs
+		((Buffer) bb).flip();
+		clientEndpoint.send(bb);
+		return true;
+	}
+
 	public void addListener(IConnectionListener listener) {
 		if (listeners2 == null)
 			listeners2 = new ArrayList<>();
@@ -598,6 +699,7 @@ public class BasicClient {
 			else
 				sb.append("&role=" + role);
 			sb.append("&version=1.0");
+			sb.append("&binary=true");
 			URI uri = contestSource.getRootURI("wss", sb.toString());
 
 			client.setDefaultMaxSessionIdleTimeout(60000L);
@@ -667,6 +769,8 @@ public class BasicClient {
 
 		switch (action) {
 			case PING: {
+				if (obj.getBoolean("binary"))
+					serverBinary = true;
 				sendPing();
 				break;
 			}
@@ -711,6 +815,33 @@ public class BasicClient {
 		}
 	}
 
+	/**
+	 * Handle a binary frame from the server: a JSON header followed by an image. The image is
+	 * added to the header as a byte array, see decodeImage().
+	 */
+	private void onMessage(ByteBuffer message) throws IOException {
+		int len = message.getInt();
+		if (len < 0 || len > message.remaining())
+			throw new IOException("Invalid frame");
+
+		byte[] h = new byte[len];
+		message.get(h);
+		String header = new String(h, StandardCharsets.UTF_8);
+		byte[] image = new byte[message.remaining()];
+		message.get(image);
+		trace("< " + header + " + " + image.length + " bytes", DEBUG_JSON_PAYLOADS);
+
+		JsonObject obj = new JSONParser(header).readObject();
+		obj.props.put("image", image);
+		String type = obj.getString(TYPE);
+		if (Type.INFO.name().equalsIgnoreCase(type))
+			handleInfo(getUID(obj, "source"), obj);
+		else if (Type.SNAPSHOT.name().equalsIgnoreCase(type))
+			handleSnapshotResponse(obj);
+		else
+			Trace.trace(Trace.WARNING, "Unknown binary action: " + type);
+	}
+
 	private static void writeClients(JSONEncoder je, int[] uids) {
 		je.openChildArray("clients");
 		for (int i = 0; i < uids.length; i++)
@@ -236,6 +236,14 @@ public class PresentationWindowImpl extends PresentationWindow {
 
 	private IThumbnailListener thumbnailListener;
 
+	// thumbnails are captured on the animation thread and handed to the thumbnail thread, which
+	// only ever keeps the most recent one. Guarded by thumbnailLock
+	private final Object thumbnailLock = new Object();
+	private Thread thumbnailThread;
+	private BufferedImage pendingThumbnail;
+	private long thumbnailCaptureNs;
+	private int thumbnailsDropped;
+
 	protected GraphicsDevice device;
 
 	public interface IThumbnailListener {
@@ -415,6 +423,51 @@ public class PresentationWindowImpl extends PresentationWindow {
 
 	public void setThumbnailListener(IThumbnailListener listener) {
 		thumbnailListener = listener;
+		if (listener != null)
+			createThumbnailThread();
+	}
+
+	/**
+	 * Create the thread that passes thumbnails to the listener, so that encoding and sending them
+	 * doesn't delay the animation thread.
+	 */
+	private void createThumbnailThread() {
+		synchronized (thumbnailLock) {
+			if (thumbnailThread != null)
+				return;
+
+			thumbnailThread = new Thread("Thumbnail Thread") {
+				@Override
+				public void run() {
+					while (true) {
+						BufferedImage image = null;
+						synchronized (thumbnailLock) {
+							while (pendingThumbnail == null) {
+								try {
+									thumbnailLock.wait();
+								} catch (InterruptedException e) {
+									// ignore
+								}
+							}
+							image = pendingThumbnail;
+							pendingThumbnail = null;
+						}
+
+						try {
+							IThumbnailListener listener = thumbnailListener;
+							if (listener != null)
+								listener.handleThumbnail(image);
+						} catch (Throwable t) {
+							Trace.trace(Trace.ERROR, "Error sending thumbnail", t);
+						}
+					}
+				}
+			};
+
+			thumbnailThread.setPriority(Thread.NORM_PRIORITY - 1);
+			thumbnailThread.setDaemon(true);
+			thumbnailThread.start();
+		}
 	}
 
 	@Override
@@ -655,21 +708,52 @@ public class PresentationWindowImpl extends PresentationWindow {
 	}
 
 	/**
-	 * Sends a thumbnail.
+	 * Captures a thumbnail and queues it to be sent. Only the capture happens on the calling
+	 * (animation) thread; the listener is called from the thumbnail thread. If the previous
+	 * thumbnail hasn't been picked up yet it is dropped, since it is already out of date.
 	 */
 	protected void sendThumbnail() {
 		if (thumbnailListener == null)
 			return;
 
 		try {
+			long start = System.nanoTime();
 			float scale = thumbnailHeight / (float) getDisplaySize().height;
 			BufferedImage image = createImage(scale);
-			thumbnailListener.handleThumbnail(image);
+			synchronized (thumbnailLock) {
+				thumbnailCaptureNs = System.nanoTime() - start;
+				if (pendingThumbnail != null)
+					thumbnailsDropped++;
+				pendingThumbnail = image;
+				thumbnailLock.notifyAll();
+			}
 		} catch (Exception e) {
 			Trace.trace(Trace.ERROR, "Error generating thumbnail", e);
 		}
 	}
 
+	/**
+	 * Returns the time it took to capture the last thumbnail on the animation thread, in ms.
+	 *
+	 * @return the capture time, in ms
+	 */
+	public double getThumbnailCaptureTime() {
+		synchronized (thumbnailLock) {
+			return thumbnailCaptureNs / 1000000.0;
+		}
+	}
+
+	/**
+	 * Returns the number of thumbnails that were replaced by a newer one before they were sent.
+	 *
+	 * @return the number of dropped thumbnails
+	 */
+	public int getThumbnailsDropped() {
+		synchronized (thumbnailLock) {
+			return thumbnailsDropped;
+		}
+	}
+
 	/**
 	 * Set the delay between triggering thumbnails, in ms.
 	 */
@@ -813,6 +897,8 @@ public class PresentationWindowImpl extends PresentationWindow {
 			g.setFont(defaultFont);
 			FontMetrics fm = g.getFontMetrics();
 			String s = fps + " fps";
+			if (thumbnailListener != null)
+				s += ", thumbnail " + nf.format(getThumbnailCaptureTime()) + "ms";
 			Dimension d = getSize();
 			g.drawString(s, d.width - fm.stringWidth(s) - 10, d.height - fm.getDescent() - 10);
 		}